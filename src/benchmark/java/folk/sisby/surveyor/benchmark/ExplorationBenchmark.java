@@ -0,0 +1,100 @@
+package folk.sisby.surveyor.benchmark;
+
+import folk.sisby.surveyor.Surveyor;
+import folk.sisby.surveyor.SurveyorExploration;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Simulates chunk sending for a full server of players - each chunk sent is checked with {@link SurveyorExploration#exploredChunk}
+ * and recorded with {@link SurveyorExploration#addChunk}, as the chunk storage mixin does.
+ * Players join with a full view of chunks, walk in a straight line, then walk back over chunks they've already explored.
+ */
+public class ExplorationBenchmark {
+    public static final int PLAYERS = 200;
+    public static final int VIEW_DISTANCE = 10;
+    public static final int STEPS = 256;
+    public static final int SPREAD = 2500;
+
+    public static void run() {
+        RegistryKey<World> worldKey = RegistryKey.of(RegistryKeys.WORLD, new Identifier(Surveyor.ID, "benchmark"));
+        simulate(worldKey, 0, false); // Warm up the JIT
+        simulate(worldKey, 1, true);
+    }
+
+    private static void simulate(RegistryKey<World> worldKey, long seed, boolean log) {
+        Random random = new Random(seed);
+        List<SurveyorExploration> explorations = new ArrayList<>(PLAYERS);
+        List<ChunkPos[]> joins = new ArrayList<>(PLAYERS);
+        List<ChunkPos[]> walks = new ArrayList<>(PLAYERS);
+        List<ChunkPos[]> returns = new ArrayList<>(PLAYERS);
+        for (int i = 0; i < PLAYERS; i++) {
+            explorations.add(new SurveyorExploration.Snapshot(new HashMap<>(), new HashMap<>(), Set.of()));
+            int x = random.nextInt(SPREAD * 2) - SPREAD;
+            int z = random.nextInt(SPREAD * 2) - SPREAD;
+            boolean alongX = random.nextBoolean();
+            int direction = random.nextBoolean() ? 1 : -1;
+            joins.add(square(x, z));
+            walks.add(edges(x, z, alongX, direction));
+            returns.add(edges(alongX ? x + STEPS * direction : x, alongX ? z : z + STEPS * direction, alongX, -direction));
+        }
+        long joinOps = (long) PLAYERS * joins.get(0).length;
+        long walkOps = (long) PLAYERS * walks.get(0).length;
+        SurveyorBenchmarks.Measurement join = SurveyorBenchmarks.measure(() -> send(worldKey, explorations, joins), joinOps);
+        SurveyorBenchmarks.Measurement walk = SurveyorBenchmarks.measure(() -> send(worldKey, explorations, walks), walkOps);
+        SurveyorBenchmarks.Measurement revisit = SurveyorBenchmarks.measure(() -> send(worldKey, explorations, returns), walkOps);
+        if (log) {
+            Surveyor.LOGGER.info("[Surveyor] Exploration ({} players, view distance {}) - join: {}", PLAYERS, VIEW_DISTANCE, join);
+            Surveyor.LOGGER.info("[Surveyor] Exploration ({} players, view distance {}) - walk: {}", PLAYERS, VIEW_DISTANCE, walk);
+            Surveyor.LOGGER.info("[Surveyor] Exploration ({} players, view distance {}) - revisit: {}", PLAYERS, VIEW_DISTANCE, revisit);
+        }
+    }
+
+    private static void send(RegistryKey<World> worldKey, List<SurveyorExploration> explorations, List<ChunkPos[]> chunks) {
+        for (int i = 0; i < explorations.size(); i++) {
+            SurveyorExploration exploration = explorations.get(i);
+            for (ChunkPos pos : chunks.get(i)) {
+                if (!exploration.exploredChunk(worldKey, pos)) exploration.addChunk(worldKey, pos);
+            }
+        }
+    }
+
+    /**
+     * The chunks sent on join - the full view square. Positions are built up-front so the measurement only counts exploration allocations.
+     */
+    private static ChunkPos[] square(int x, int z) {
+        int width = VIEW_DISTANCE * 2 + 1;
+        ChunkPos[] chunks = new ChunkPos[width * width];
+        for (int dx = 0; dx < width; dx++) {
+            for (int dz = 0; dz < width; dz++) {
+                chunks[dx * width + dz] = new ChunkPos(x + dx - VIEW_DISTANCE, z + dz - VIEW_DISTANCE);
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * The chunks sent while walking {@link #STEPS} chunks in one direction - a new leading edge each step.
+     */
+    private static ChunkPos[] edges(int x, int z, boolean alongX, int direction) {
+        int width = VIEW_DISTANCE * 2 + 1;
+        ChunkPos[] chunks = new ChunkPos[STEPS * width];
+        for (int step = 1; step <= STEPS; step++) {
+            int lead = (alongX ? x : z) + (step + VIEW_DISTANCE) * direction;
+            for (int i = 0; i < width; i++) {
+                int side = (alongX ? z : x) + i - VIEW_DISTANCE;
+                chunks[(step - 1) * width + i] = alongX ? new ChunkPos(lead, side) : new ChunkPos(side, lead);
+            }
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,75 @@
+package folk.sisby.surveyor.benchmark;
+
+import com.mojang.authlib.GameProfile;
+import folk.sisby.surveyor.Surveyor;
+import folk.sisby.surveyor.util.RaycastUtil;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ChunkTicketType;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Unit;
+import net.minecraft.util.hit.HitResult;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.Heightmap;
+
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Compares the precise view raycast against the heightmap-walking coarse raycast from the world spawn,
+ * over the same set of random look directions, at a normal and a maximum render distance.
+ */
+public class RaycastBenchmark {
+    public static final int[] RENDER_DISTANCES = {12, 32};
+    public static final int RAYS = 2000;
+
+    public static void run(ServerWorld world) {
+        ServerPlayerEntity player = new ServerPlayerEntity(world.getServer(), world, new GameProfile(UUID.nameUUIDFromBytes("surveyor_benchmark".getBytes()), "SurveyorBenchmark"));
+        BlockPos spawn = world.getSpawnPos();
+        ChunkPos center = new ChunkPos(spawn);
+        for (int renderDistance : RENDER_DISTANCES) {
+            Surveyor.LOGGER.info("[Surveyor] Raycast (render distance {}) - loading chunks...", renderDistance);
+            world.getChunkManager().addTicket(ChunkTicketType.START, center, renderDistance + 1, Unit.INSTANCE);
+            for (int x = center.x - renderDistance; x <= center.x + renderDistance; x++) {
+                for (int z = center.z - renderDistance; z <= center.z + renderDistance; z++) {
+                    world.getChunk(x, z);
+                }
+            }
+            int surface = world.getTopY(Heightmap.Type.MOTION_BLOCKING, spawn.getX(), spawn.getZ());
+            player.refreshPositionAndAngles(spawn.getX() + 0.5, surface, spawn.getZ() + 0.5, 0, 0);
+            Vec3d cameraPos = player.getCameraPosVec(1.0F);
+            Random random = new Random(renderDistance);
+            Vec3d[] directions = new Vec3d[RAYS];
+            for (int i = 0; i < RAYS; i++) {
+                directions[i] = Vec3d.fromPolar(random.nextFloat() * 75.0F - 30.0F, random.nextFloat() * 360.0F); // From slightly up to well down
+            }
+            HitResult[] preciseHits = new HitResult[RAYS];
+            HitResult[] coarseHits = new HitResult[RAYS];
+            precise(player, cameraPos, directions, renderDistance, preciseHits); // Warm up the JIT
+            coarse(player, cameraPos, directions, renderDistance, coarseHits);
+            SurveyorBenchmarks.Measurement precise = SurveyorBenchmarks.measure(() -> precise(player, cameraPos, directions, renderDistance, preciseHits), RAYS);
+            SurveyorBenchmarks.Measurement coarse = SurveyorBenchmarks.measure(() -> coarse(player, cameraPos, directions, renderDistance, coarseHits), RAYS);
+            int sameChunk = 0;
+            for (int i = 0; i < RAYS; i++) {
+                if (new ChunkPos(BlockPos.ofFloored(preciseHits[i].getPos())).equals(new ChunkPos(BlockPos.ofFloored(coarseHits[i].getPos())))) sameChunk++;
+            }
+            Surveyor.LOGGER.info("[Surveyor] Raycast (render distance {}) - precise: {}", renderDistance, precise);
+            Surveyor.LOGGER.info("[Surveyor] Raycast (render distance {}) - coarse: {}", renderDistance, coarse);
+            Surveyor.LOGGER.info("[Surveyor] Raycast (render distance {}) - coarse hit the same chunk as precise for {}/{} rays", renderDistance, sameChunk, RAYS);
+            world.getChunkManager().removeTicket(ChunkTicketType.START, center, renderDistance + 1, Unit.INSTANCE);
+        }
+    }
+
+    private static void precise(ServerPlayerEntity player, Vec3d cameraPos, Vec3d[] directions, int renderDistance, HitResult[] hits) {
+        for (int i = 0; i < directions.length; i++) {
+            hits[i] = RaycastUtil.raycast(player, cameraPos, cameraPos.add(directions[i].multiply(RaycastUtil.viewDistance(player, cameraPos, directions[i], renderDistance))));
+        }
+    }
+
+    private static void coarse(ServerPlayerEntity player, Vec3d cameraPos, Vec3d[] directions, int renderDistance, HitResult[] hits) {
+        for (int i = 0; i < directions.length; i++) {
+            hits[i] = RaycastUtil.coarseRaycast(player, cameraPos, directions[i], renderDistance);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package folk.sisby.surveyor.benchmark;
+
+import folk.sisby.surveyor.Surveyor;
+import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Runs surveyor's benchmarks on a dedicated server once it's started, then stops it. Use the {@code runBenchmark} gradle task.
+ */
+public class SurveyorBenchmarks implements ModInitializer {
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Override
+    public void onInitialize() {
+        ServerLifecycleEvents.SERVER_STARTED.register(server -> {
+            Surveyor.LOGGER.info("[Surveyor] Running benchmarks...");
+            ExplorationBenchmark.run();
+            RaycastBenchmark.run(server.getOverworld());
+            Surveyor.LOGGER.info("[Surveyor] Benchmarks finished.");
+            server.stop(false);
+        });
+    }
+
+    /**
+     * Times a run of operations on the current thread, counting the bytes it allocated.
+     */
+    public static Measurement measure(Runnable runnable, long operations) {
+        long bytes = THREADS.getCurrentThreadAllocatedBytes();
+        long nanos = System.nanoTime();
+        runnable.run();
+        nanos = System.nanoTime() - nanos;
+        bytes = THREADS.getCurrentThreadAllocatedBytes() - bytes;
+        return new Measurement(operations, nanos, bytes);
+    }
+
+    public record Measurement(long operations, long nanos, long bytes) {
+        @Override
+        public String toString() {
+            return "%d ops, %.1f ns/op, %.2f bytes/op".formatted(operations, (double) nanos / operations, (double) bytes / operations);
+        }
+    }
+}
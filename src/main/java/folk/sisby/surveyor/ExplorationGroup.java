@@ -0,0 +1,117 @@
+package folk.sisby.surveyor;
+
+import folk.sisby.surveyor.packet.S2CUpdateRegionPacket;
+import folk.sisby.surveyor.terrain.RegionSummary;
+import folk.sisby.surveyor.terrain.WorldTerrainSummary;
+import folk.sisby.surveyor.util.MapUtil;
+import folk.sisby.surveyor.util.RegionBitmap;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.gen.structure.Structure;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The union of its members' exploration, kept up to date as they explore so checks against it don't depend on group size.
+ * Chunks newly explored by one member are pushed to the other online members once per tick.
+ */
+public class ExplorationGroup implements SurveyorExploration {
+    protected final String id;
+    protected final Set<UUID> members;
+    protected final Map<RegistryKey<World>, RegionBitmap> terrain = new ConcurrentHashMap<>();
+    protected final Map<RegistryKey<World>, Map<RegistryKey<Structure>, LongSet>> structures = new ConcurrentHashMap<>();
+    protected final Map<UUID, Map<RegistryKey<World>, Map<ChunkPos, BitSet>>> pendingTerrain = new HashMap<>();
+
+    public ExplorationGroup(String id, Set<UUID> members) {
+        this.id = id;
+        this.members = Set.copyOf(members);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public Map<RegistryKey<World>, RegionBitmap> terrain() {
+        return terrain;
+    }
+
+    @Override
+    public Map<RegistryKey<World>, Map<RegistryKey<Structure>, LongSet>> structures() {
+        return structures;
+    }
+
+    @Override
+    public Set<UUID> sharedPlayers() {
+        return members;
+    }
+
+    public synchronized void onChunkAdded(UUID explorer, RegistryKey<World> worldKey, ChunkPos pos) {
+        if (!terrain.computeIfAbsent(worldKey, k -> new RegionBitmap()).add(pos.x, pos.z)) return;
+        pendingTerrain.computeIfAbsent(explorer, k -> new HashMap<>()).computeIfAbsent(worldKey, k -> new HashMap<>()).computeIfAbsent(new ChunkPos(pos.getRegionX(), pos.getRegionZ()), k -> new BitSet()).set(RegionSummary.bitForChunk(pos));
+    }
+
+    public synchronized void onRegionMerged(UUID explorer, RegistryKey<World> worldKey, ChunkPos regionPos, BitSet bitSet) {
+        RegionBitmap regions = terrain.computeIfAbsent(worldKey, k -> new RegionBitmap());
+        BitSet added = (BitSet) bitSet.clone();
+        BitSet known = regions.getRegion(regionPos);
+        if (known != null) added.andNot(known);
+        if (added.isEmpty()) return;
+        regions.or(regionPos, added);
+        pendingTerrain.computeIfAbsent(explorer, k -> new HashMap<>()).computeIfAbsent(worldKey, k -> new HashMap<>()).computeIfAbsent(regionPos, k -> new BitSet()).or(added);
+    }
+
+    public synchronized void onStructureAdded(ServerPlayerEntity explorer, RegistryKey<World> worldKey, RegistryKey<Structure> structureKey, ChunkPos pos) {
+        if (exploredStructure(worldKey, structureKey, pos)) return;
+        addStructure(worldKey, structureKey, pos);
+        ServerWorld world = explorer.getServer().getWorld(worldKey);
+        if (world == null) return;
+        for (ServerPlayerEntity member : world.getPlayers()) {
+            if (member != explorer && members.contains(member.getUuid())) WorldSummary.of(world).structures().queueSync(member, structureKey, pos);
+        }
+    }
+
+    /**
+     * Sends each online member the chunks explored by other members since the last flush.
+     */
+    public void flushSync(MinecraftServer server) {
+        Map<UUID, Map<RegistryKey<World>, Map<ChunkPos, BitSet>>> pending;
+        synchronized (this) {
+            if (pendingTerrain.isEmpty()) return;
+            pending = new HashMap<>(pendingTerrain);
+            pendingTerrain.clear();
+        }
+        Map<ServerWorld, Map<ServerPlayerEntity, Map<ChunkPos, BitSet>>> playerTerrain = new HashMap<>();
+        for (UUID uuid : members) {
+            ServerPlayerEntity member = server.getPlayerManager().getPlayer(uuid);
+            if (member == null) continue;
+            RegistryKey<World> worldKey = member.getServerWorld().getRegistryKey();
+            Map<ChunkPos, BitSet> memberTerrain = new HashMap<>();
+            for (Map.Entry<UUID, Map<RegistryKey<World>, Map<ChunkPos, BitSet>>> entry : pending.entrySet()) {
+                if (entry.getKey().equals(uuid) || !entry.getValue().containsKey(worldKey)) continue;
+                entry.getValue().get(worldKey).forEach((rPos, bits) -> memberTerrain.computeIfAbsent(rPos, k -> new BitSet()).or(bits));
+            }
+            if (!memberTerrain.isEmpty()) playerTerrain.computeIfAbsent(member.getServerWorld(), k -> new HashMap<>()).put(member, memberTerrain);
+        }
+        playerTerrain.forEach((world, worldTerrain) -> {
+            WorldTerrainSummary summary = WorldSummary.of(world).terrain();
+            MapUtil.groupByValue(worldTerrain).forEach((regionBits, players) -> regionBits.forEach((rPos, bits) -> {
+                RegionSummary region = summary.getRegion(rPos);
+                if (region == null) return;
+                BitSet sendBits = (BitSet) bits.clone();
+                sendBits.and(region.bitSet());
+                if (!sendBits.isEmpty()) new S2CUpdateRegionPacket(rPos, region, sendBits).send(players);
+            }));
+        });
+    }
+}
@@ -0,0 +1,158 @@
+package folk.sisby.surveyor;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Util;
+import net.minecraft.util.WorldSavePath;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks which players share exploration. Membership is set through {@link #setGroup} and persisted per-server;
+ * each group's union exploration is built off-thread when groups load or change, and members use their own exploration until it's ready.
+ */
+public class ExplorationGroups {
+    public static final String GROUPS_FILE = "groups.dat";
+    private static final Map<String, Set<UUID>> MEMBERS = new ConcurrentHashMap<>();
+    private static final Map<UUID, String> GROUP_OF = new ConcurrentHashMap<>();
+    private static final Map<String, ExplorationGroup> LOADED = new ConcurrentHashMap<>();
+    private static final Map<String, Object> BUILDING = new ConcurrentHashMap<>();
+    private static boolean dirty = false;
+
+    public static File getSaveFile(MinecraftServer server) {
+        return server.getSavePath(WorldSavePath.ROOT).resolve(Surveyor.DATA_SUBFOLDER).resolve(Surveyor.ID).resolve(GROUPS_FILE).toFile();
+    }
+
+    /**
+     * The player's group, or null if they're not in one or it's still being built.
+     */
+    public static @Nullable ExplorationGroup get(MinecraftServer server, UUID uuid) {
+        String id = GROUP_OF.get(uuid);
+        return id == null ? null : LOADED.get(id);
+    }
+
+    public static @Nullable String getGroupId(UUID uuid) {
+        return GROUP_OF.get(uuid);
+    }
+
+    /**
+     * Moves a player into a group, or out of their current one when {@code id} is null.
+     * Both affected groups are rebuilt in the background.
+     */
+    public static void setGroup(MinecraftServer server, UUID uuid, @Nullable String id) {
+        String oldId = GROUP_OF.remove(uuid);
+        if (oldId != null) {
+            MEMBERS.get(oldId).remove(uuid);
+            if (MEMBERS.get(oldId).isEmpty()) {
+                MEMBERS.remove(oldId);
+                LOADED.remove(oldId);
+                BUILDING.remove(oldId);
+            } else {
+                build(server, oldId);
+            }
+        }
+        if (id != null) {
+            MEMBERS.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(uuid);
+            GROUP_OF.put(uuid, id);
+            build(server, id);
+        }
+        dirty = true;
+    }
+
+    /**
+     * Reads every member's stored exploration on the IO worker, then installs the group on the server thread,
+     * merged with online members' live exploration so nothing explored during the build is missed.
+     * The previous group (if any) stays in use until then; a newer build for the same group discards this one.
+     */
+    private static void build(MinecraftServer server, String id) {
+        Set<UUID> members = Set.copyOf(MEMBERS.get(id));
+        Object build = new Object();
+        BUILDING.put(id, build);
+        CompletableFuture.supplyAsync(() -> {
+            SurveyorExploration stored = new SurveyorExploration.Snapshot(new HashMap<>(), new HashMap<>(), Set.of());
+            for (UUID member : members) {
+                stored.mergeFrom(ExplorationStore.read(ExplorationStore.getSaveFile(server, member)));
+            }
+            return stored;
+        }, Util.getIoWorkerExecutor()).thenAcceptAsync(stored -> {
+            if (!BUILDING.remove(id, build)) return;
+            ExplorationGroup group = new ExplorationGroup(id, members);
+            group.mergeFrom(stored);
+            for (UUID member : members) {
+                ServerPlayerEntity player = server.getPlayerManager().getPlayer(member);
+                if (player != null) group.mergeFrom(SurveyorExploration.of(player));
+            }
+            LOADED.put(id, group);
+        }, server);
+    }
+
+    public static void flushSync(MinecraftServer server) {
+        for (ExplorationGroup group : LOADED.values()) {
+            group.flushSync(server);
+        }
+    }
+
+    public static void load(MinecraftServer server) {
+        clear();
+        File file = getSaveFile(server);
+        if (!file.exists()) return;
+        try {
+            NbtCompound nbt = NbtIo.readCompressed(file);
+            for (String id : nbt.getKeys()) {
+                NbtList list = nbt.getList(id, NbtElement.INT_ARRAY_TYPE);
+                Set<UUID> members = ConcurrentHashMap.newKeySet();
+                for (NbtElement element : list) {
+                    UUID uuid = NbtHelper.toUuid(element);
+                    members.add(uuid);
+                    GROUP_OF.put(uuid, id);
+                }
+                MEMBERS.put(id, members);
+            }
+            MEMBERS.keySet().forEach(id -> build(server, id));
+        } catch (IOException e) {
+            Surveyor.LOGGER.error("[Surveyor] Error loading exploration groups file.", e);
+        }
+    }
+
+    public static void save(MinecraftServer server) {
+        if (!dirty) return;
+        NbtCompound nbt = new NbtCompound();
+        MEMBERS.forEach((id, members) -> {
+            NbtList list = new NbtList();
+            for (UUID uuid : new HashSet<>(members)) {
+                list.add(NbtHelper.fromUuid(uuid));
+            }
+            nbt.put(id, list);
+        });
+        File file = getSaveFile(server);
+        file.getParentFile().mkdirs();
+        try {
+            NbtIo.writeCompressed(nbt, file);
+            dirty = false;
+        } catch (IOException e) {
+            Surveyor.LOGGER.error("[Surveyor] Error writing exploration groups file.", e);
+        }
+    }
+
+    public static void clear() {
+        MEMBERS.clear();
+        GROUP_OF.clear();
+        LOADED.clear();
+        BUILDING.clear();
+        dirty = false;
+    }
+}
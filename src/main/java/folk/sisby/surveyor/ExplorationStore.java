@@ -0,0 +1,128 @@
+package folk.sisby.surveyor;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Util;
+import net.minecraft.util.WorldSavePath;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores each player's exploration in its own file, rather than in vanilla player data.
+ * Files are read off-thread at login, and only rewritten when the exploration has changed.
+ */
+public class ExplorationStore {
+    public static final String PLAYERS_SUBFOLDER = "players";
+    private static final Map<UUID, CompletableFuture<Void>> LOADING = new ConcurrentHashMap<>();
+    private static final Map<UUID, ServerPlayerEntity> DISCONNECTED = new ConcurrentHashMap<>();
+
+    public static File getSaveFile(MinecraftServer server, UUID uuid) {
+        return server.getSavePath(WorldSavePath.ROOT).resolve(Surveyor.DATA_SUBFOLDER).resolve(Surveyor.ID).resolve(PLAYERS_SUBFOLDER).resolve(uuid + ".dat").toFile();
+    }
+
+    private static SurveyorPlayer.ServerPlayerExploration of(ServerPlayerEntity player) {
+        return (SurveyorPlayer.ServerPlayerExploration) SurveyorExploration.of(player);
+    }
+
+    public static void onInit(ServerPlayNetworkHandler handler, MinecraftServer server) {
+        UUID uuid = handler.getPlayer().getUuid();
+        File file = getSaveFile(server, uuid);
+        CompletableFuture<Void> previous = LOADING.get(uuid); // Still loading for an earlier connection - read once that's merged and saved.
+        if (previous == null && !file.exists()) return;
+        CompletableFuture<Void> loading = new CompletableFuture<>();
+        LOADING.put(uuid, loading);
+        (previous == null ? CompletableFuture.<Void>completedFuture(null) : previous).thenApplyAsync(v -> read(file), Util.getIoWorkerExecutor()).whenCompleteAsync((loaded, throwable) -> {
+            LOADING.remove(uuid, loading);
+            ServerPlayerEntity disconnected = DISCONNECTED.remove(uuid);
+            ServerPlayerEntity player = disconnected != null ? disconnected : server.getPlayerManager().getPlayer(uuid);
+            try {
+                if (throwable != null) {
+                    Surveyor.LOGGER.error("[Surveyor] Error loading exploration file {} - continuing with this session's exploration.", file.getName(), throwable);
+                } else {
+                    // Merge into anything migrated from legacy player data or explored since the player joined.
+                    if (player != null) of(player).mergeFrom(loaded);
+                    ExplorationGroup group = ExplorationGroups.get(server, uuid);
+                    if (group != null) group.mergeFrom(loaded);
+                }
+                if (disconnected != null) write(disconnected);
+            } catch (RuntimeException e) {
+                Surveyor.LOGGER.error("[Surveyor] Error merging exploration file {}.", file.getName(), e);
+            } finally {
+                loading.complete(null);
+            }
+        }, server);
+    }
+
+    /**
+     * Saves a leaving player's exploration - or, if their file is still loading, once it's been merged in.
+     */
+    public static void onDisconnect(ServerPlayerEntity player) {
+        if (LOADING.containsKey(player.getUuid())) {
+            DISCONNECTED.put(player.getUuid(), player);
+        } else {
+            save(player);
+        }
+    }
+
+    public static SurveyorExploration read(File file) {
+        SurveyorExploration exploration = new SurveyorExploration.Snapshot(new HashMap<>(), new HashMap<>(), Set.of());
+        if (!file.exists()) return exploration;
+        try {
+            exploration.read(NbtIo.readCompressed(file));
+        } catch (IOException e) {
+            Surveyor.LOGGER.error("[Surveyor] Error loading exploration file {}.", file.getName(), e);
+        }
+        return exploration;
+    }
+
+    /**
+     * Runs an action on the server thread once the player's exploration has loaded.
+     */
+    public static void whenLoaded(ServerPlayerEntity player, Runnable action) {
+        CompletableFuture<Void> loading = LOADING.get(player.getUuid());
+        if (loading == null) {
+            action.run();
+        } else {
+            loading.thenRun(action);
+        }
+    }
+
+    public static boolean save(ServerPlayerEntity player) {
+        SurveyorPlayer.ServerPlayerExploration exploration = of(player);
+        // Saving before the file has loaded would overwrite it with only this session's exploration.
+        if (!exploration.isDirty() || LOADING.containsKey(player.getUuid())) return false;
+        return write(player);
+    }
+
+    private static boolean write(ServerPlayerEntity player) {
+        SurveyorPlayer.ServerPlayerExploration exploration = of(player);
+        File file = getSaveFile(player.getServer(), player.getUuid());
+        file.getParentFile().mkdirs();
+        try {
+            NbtIo.writeCompressed(exploration.write(new NbtCompound()), file);
+            exploration.markClean();
+            return true;
+        } catch (IOException e) {
+            Surveyor.LOGGER.error("[Surveyor] Error writing exploration file for {}.", player.getGameProfile().getName(), e);
+            return false;
+        }
+    }
+
+    public static int saveAll(MinecraftServer server) {
+        int saved = 0;
+        for (ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
+            if (save(player)) saved++;
+        }
+        return saved;
+    }
+}
@@ -0,0 +1,140 @@
+package folk.sisby.surveyor;
+
+import folk.sisby.surveyor.structure.WorldStructureSummary;
+import folk.sisby.surveyor.util.RaycastUtil;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides when to run {@link Surveyor#checkStructureExploration} for each player.
+ * Players are staggered across ticks, checked more often while unexplored structures are nearby,
+ * and skipped entirely while they haven't moved or turned.
+ */
+public class StructureExplorationScheduler {
+    public static final int INTERVAL = 8;
+    public static final int NEAR_INTERVAL = 2;
+    public static final int MAX_SKIPPED_TICKS = 160; // Re-check idle players occasionally, in case structures were summarised around them.
+    public static final float ROTATION_THRESHOLD = 2.0F;
+    public static final int CONE_RAYS_PER_CHECK = 2;
+    public static final int METRICS_INTERVAL = 1200;
+    private static final Map<UUID, PlayerState> STATES = new ConcurrentHashMap<>();
+    private static long checks = 0;
+    private static long skips = 0;
+    private static long rays = 0;
+    private static long nanos = 0;
+    private static int ticks = 0;
+    private static int tickRays = 0;
+
+    private static class PlayerState {
+        private final int slot;
+        private RegistryKey<World> worldKey = null;
+        private long blockPos = Long.MIN_VALUE;
+        private float yaw;
+        private float pitch;
+        private long lastChecked;
+        private boolean nearUnexplored = false;
+        private int nextConeRay = 0;
+
+        private PlayerState(UUID uuid) {
+            this.slot = Math.floorMod(uuid.hashCode(), INTERVAL);
+        }
+
+        private boolean unchanged(ServerWorld world, ServerPlayerEntity player) {
+            return worldKey == world.getRegistryKey() && blockPos == player.getBlockPos().asLong() && MathHelper.angleBetween(yaw, player.getYaw()) < ROTATION_THRESHOLD && Math.abs(pitch - player.getPitch()) < ROTATION_THRESHOLD;
+        }
+
+        private void update(ServerWorld world, ServerPlayerEntity player) {
+            worldKey = world.getRegistryKey();
+            blockPos = player.getBlockPos().asLong();
+            yaw = player.getYaw();
+            pitch = player.getPitch();
+            lastChecked = world.getTime();
+        }
+    }
+
+    public static void tick(ServerWorld world) {
+        long start = System.nanoTime();
+        long time = world.getTime();
+        WorldStructureSummary structures = WorldSummary.of(world).structures();
+        List<ServerPlayerEntity> players = world.getPlayers();
+        int first = players.isEmpty() ? 0 : Math.floorMod(time / INTERVAL, players.size()); // Rotate who goes first each round of slots, so the ray budget isn't always spent on the same players.
+        for (int p = 0; p < players.size(); p++) {
+            ServerPlayerEntity player = players.get((first + p) % players.size());
+            PlayerState state = STATES.computeIfAbsent(player.getUuid(), PlayerState::new);
+            if ((time + state.slot) % (state.nearUnexplored ? NEAR_INTERVAL : INTERVAL) != 0) continue;
+            if (state.unchanged(world, player) && time - state.lastChecked < MAX_SKIPPED_TICKS) {
+                skips++;
+                continue;
+            }
+            state.update(world, player);
+            SurveyorExploration exploration = SurveyorExploration.of(player);
+            LongSet checkedChunks = new LongOpenHashSet();
+            state.nearUnexplored = false;
+            check(world, player, exploration, structures, checkedChunks, state, player.getBlockPos());
+            int renderDistance = ((SurveyorPlayer) player).surveyor$getViewDistance();
+            Vec3d cameraPos = player.getCameraPosVec(1.0F);
+            check(world, player, exploration, structures, checkedChunks, state, BlockPos.ofFloored(RaycastUtil.coarseRaycast(player, cameraPos, player.getRotationVec(1.0F), renderDistance).getPos()));
+            int coneRays = Surveyor.CONFIG.viewConeRays;
+            for (int i = 0; i < Math.min(CONE_RAYS_PER_CHECK, coneRays) && tickRays < Surveyor.CONFIG.viewRayBudget; i++) {
+                Vec3d direction = coneDirection(player, state.nextConeRay, coneRays);
+                state.nextConeRay = (state.nextConeRay + 1) % coneRays;
+                check(world, player, exploration, structures, checkedChunks, state, BlockPos.ofFloored(RaycastUtil.coarseRaycast(player, cameraPos, direction, renderDistance).getPos()));
+                tickRays++;
+                rays++;
+            }
+            checks++;
+        }
+        nanos += System.nanoTime() - start;
+    }
+
+    private static void check(ServerWorld world, ServerPlayerEntity player, SurveyorExploration exploration, WorldStructureSummary structures, LongSet checkedChunks, PlayerState state, BlockPos pos) {
+        ChunkPos chunkPos = new ChunkPos(pos);
+        if (!checkedChunks.add(chunkPos.toLong())) return; // One test per chunk - nearby hits almost always find the same structures.
+        Surveyor.checkStructureExploration(world, player, pos);
+        if (structures.hasUnexploredPieces(chunkPos, exploration)) state.nearUnexplored = true;
+    }
+
+    /**
+     * The direction of one ray in the view cone - spread evenly across the cone's width, alternating slightly above and below the look direction.
+     */
+    private static Vec3d coneDirection(ServerPlayerEntity player, int index, int count) {
+        float angle = Surveyor.CONFIG.viewConeAngle;
+        float yawOffset = count == 1 ? 0 : -angle / 2 + angle * index / (count - 1);
+        float pitchOffset = (index & 1) == 0 ? angle / 8 : -angle / 8;
+        return Vec3d.fromPolar(MathHelper.clamp(player.getPitch() + pitchOffset, -90.0F, 90.0F), player.getYaw() + yawOffset);
+    }
+
+    /**
+     * Resets the per-tick ray budget, and in debug mode logs the checks run and skipped and the time spent once per {@link #METRICS_INTERVAL} server ticks.
+     */
+    public static void endTick(MinecraftServer server) {
+        tickRays = 0;
+        if (++ticks < METRICS_INTERVAL) return;
+        if (Surveyor.CONFIG.debugMode) {
+            Surveyor.LOGGER.info("[Surveyor] Structure exploration: {} checks, {} skipped, {} cone rays for {} players over {} ticks - {} us/tick", checks, skips, rays, server.getCurrentPlayerCount(), ticks, nanos / 1000 / ticks);
+        }
+        checks = 0;
+        skips = 0;
+        rays = 0;
+        nanos = 0;
+        ticks = 0;
+    }
+
+    public static void remove(ServerPlayerEntity player) {
+        STATES.remove(player.getUuid());
+    }
+}
@@ -15,4 +15,16 @@ public class SurveyorConfig extends WrappedConfig {
 
     @Comment("Whether to share all landmarks all the time")
     public final Boolean shareAllLandmarks = false;
+
+    @Comment("The block distance within which players receive live landmark updates, or 0 for unlimited. Changes further away are sent once the player comes within range")
+    public final Integer landmarkSyncDistance = 0;
+
+    @Comment("The number of extra view rays fanned around the player's look direction when checking for structures, cast a few per check")
+    public final Integer viewConeRays = 6;
+
+    @Comment("The total width of the view ray fan, in degrees")
+    public final Integer viewConeAngle = 60;
+
+    @Comment("The most extra view rays cast per tick across all players - players over budget are only checked along their look direction, and the first player checked rotates each check round")
+    public final Integer viewRayBudget = 64;
 }
@@ -6,12 +6,11 @@ import folk.sisby.surveyor.client.SurveyorClientEvents;
 import folk.sisby.surveyor.landmark.Landmark;
 import folk.sisby.surveyor.landmark.LandmarkType;
 import folk.sisby.surveyor.landmark.WorldLandmarks;
-import folk.sisby.surveyor.terrain.RegionSummary;
-import it.unimi.dsi.fastutil.longs.LongArrayList;
-import it.unimi.dsi.fastutil.longs.LongList;
+import folk.sisby.surveyor.util.RegionBitmap;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import it.unimi.dsi.fastutil.longs.LongSet;
 import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
 import net.minecraft.registry.RegistryKey;
 import net.minecraft.registry.RegistryKeys;
 import net.minecraft.server.network.ServerPlayerEntity;
@@ -26,7 +25,6 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 public interface SurveyorExploration {
     static SurveyorExploration of(ServerPlayerEntity player) {
@@ -36,16 +34,15 @@ public interface SurveyorExploration {
     String KEY_EXPLORED_TERRAIN = "exploredTerrain";
     String KEY_EXPLORED_STRUCTURES = "exploredStructures";
 
-    Map<RegistryKey<World>, Map<ChunkPos, BitSet>> terrain();
+    Map<RegistryKey<World>, RegionBitmap> terrain();
 
     Map<RegistryKey<World>, Map<RegistryKey<Structure>, LongSet>> structures();
 
     Set<UUID> sharedPlayers();
 
     default boolean exploredChunk(RegistryKey<World> worldKey, ChunkPos pos) {
-        ChunkPos regionPos = new ChunkPos(pos.getRegionX(), pos.getRegionZ());
-        Map<ChunkPos, BitSet> regions = terrain().get(worldKey);
-        return Surveyor.CONFIG.shareAllTerrain || regions != null && regions.containsKey(regionPos) && regions.get(regionPos).get(RegionSummary.bitForChunk(pos));
+        RegionBitmap regions = terrain().get(worldKey);
+        return Surveyor.CONFIG.shareAllTerrain || regions != null && regions.contains(pos.x, pos.z);
     }
 
     default boolean exploredStructure(RegistryKey<World> worldKey, RegistryKey<Structure> structure, ChunkPos pos) {
@@ -59,17 +56,11 @@ public interface SurveyorExploration {
 
     default Map<ChunkPos, BitSet> limitTerrainBitset(RegistryKey<World> worldKey, Map<ChunkPos, BitSet> bitSet) {
         if (Surveyor.CONFIG.shareAllTerrain) return bitSet;
-        Map<ChunkPos, BitSet> regions = terrain().get(worldKey);
+        RegionBitmap regions = terrain().get(worldKey);
         if (regions == null) {
             bitSet.clear();
         } else {
-            bitSet.forEach((rPos, set) -> {
-                if (regions.containsKey(rPos)) {
-                    set.and(regions.get(rPos));
-                } else {
-                    set.clear();
-                }
-            });
+            bitSet.forEach(regions::limit);
         }
         return bitSet;
     }
@@ -110,30 +101,19 @@ public interface SurveyorExploration {
     }
 
     default void updateClientForMergeRegion(World world, ChunkPos regionPos, BitSet bitSet) {
-        Set<ChunkPos> terrainKeys = bitSet.stream().mapToObj(i -> RegionSummary.chunkForBit(regionPos, i)).collect(Collectors.toSet());
-        SurveyorClientEvents.Invoke.terrainUpdated(world, terrainKeys);
-        Multimap<LandmarkType<?>, BlockPos> landmarkKeys = HashMultimap.create();
-        WorldSummary.of(world).landmarks().keySet(this).forEach((type, pos) -> {
-            if (terrainKeys.contains(new ChunkPos(pos)) && WorldSummary.of(world).landmarks().get(type, pos).owner() == null) landmarkKeys.put(type, pos);
-        });
-        SurveyorClientEvents.Invoke.landmarksAdded(world, landmarkKeys);
+        SurveyorClientEvents.Invoke.queueExplored(world, regionPos, bitSet);
     }
 
     default void mergeRegion(RegistryKey<World> worldKey, ChunkPos regionPos, BitSet bitSet) {
-        terrain().computeIfAbsent(worldKey, k -> new HashMap<>()).computeIfAbsent(regionPos, p -> new BitSet(RegionSummary.REGION_SIZE)).or(bitSet);
+        terrain().computeIfAbsent(worldKey, k -> new RegionBitmap()).or(regionPos, bitSet);
     }
 
     default void updateClientForAddChunk(World world, ChunkPos chunkPos) {
-        SurveyorClientEvents.Invoke.terrainUpdated(world, chunkPos);
-        Multimap<LandmarkType<?>, BlockPos> landmarkKeys = HashMultimap.create();
-        WorldSummary.of(world).landmarks().keySet(this).forEach((type, pos) -> {
-            if (chunkPos.equals(new ChunkPos(pos)) && WorldSummary.of(world).landmarks().get(type, pos).owner() == null) landmarkKeys.put(type, pos);
-        });
-        SurveyorClientEvents.Invoke.landmarksAdded(world, landmarkKeys);
+        SurveyorClientEvents.Invoke.queueExplored(world, chunkPos);
     }
 
     default void addChunk(RegistryKey<World> worldKey, ChunkPos pos) {
-        terrain().computeIfAbsent(worldKey, k -> new HashMap<>()).computeIfAbsent(new ChunkPos(pos.getRegionX(), pos.getRegionZ()), k -> new BitSet(RegionSummary.BITSET_SIZE)).set(RegionSummary.bitForChunk(pos));
+        terrain().computeIfAbsent(worldKey, k -> new RegionBitmap()).add(pos.x, pos.z);
     }
 
     default void updateClientForAddStructure(World world, RegistryKey<Structure> structureKey, ChunkPos pos) {
@@ -146,20 +126,7 @@ public interface SurveyorExploration {
 
     default NbtCompound write(NbtCompound nbt) {
         NbtCompound terrainCompound = new NbtCompound();
-        terrain().forEach((worldKey, map) -> {
-            LongList regionLongs = new LongArrayList();
-            for (Map.Entry<ChunkPos, BitSet> entry : map.entrySet()) {
-                regionLongs.add(entry.getKey().toLong());
-                if (entry.getValue().cardinality() == RegionSummary.BITSET_SIZE) {
-                    regionLongs.add(-1);
-                } else {
-                    long[] regionBits = entry.getValue().toLongArray();
-                    regionLongs.add(regionBits.length);
-                    regionLongs.addAll(LongList.of(regionBits));
-                }
-            }
-            terrainCompound.putLongArray(worldKey.getValue().toString(), regionLongs.toLongArray());
-        });
+        terrain().forEach((worldKey, regions) -> terrainCompound.putByteArray(worldKey.getValue().toString(), regions.toBytes()));
         nbt.put(KEY_EXPLORED_TERRAIN, terrainCompound);
 
         NbtCompound structuresCompound = new NbtCompound();
@@ -177,23 +144,8 @@ public interface SurveyorExploration {
     default void read(NbtCompound nbt) {
         NbtCompound terrainCompound = nbt.getCompound(KEY_EXPLORED_TERRAIN);
         for (String worldKeyString : terrainCompound.getKeys()) {
-            long[] regionArray = terrainCompound.getLongArray(worldKeyString);
-            Map<ChunkPos, BitSet> regionMap = new HashMap<>();
-            for (int i = 0; i + 1 < regionArray.length; i += 2) {
-                ChunkPos rPos = new ChunkPos(regionArray[i]);
-                int bitLength = (int) regionArray[i + 1];
-                if (bitLength == -1) {
-                    BitSet set = new BitSet(RegionSummary.BITSET_SIZE);
-                    set.set(0, RegionSummary.BITSET_SIZE);
-                    regionMap.put(rPos, set);
-                } else {
-                    long[] bitArray = new long[bitLength];
-                    System.arraycopy(regionArray, i + 2, bitArray, 0, bitLength);
-                    regionMap.put(rPos, BitSet.valueOf(bitArray));
-                    i += bitLength;
-                }
-            }
-            terrain().put(RegistryKey.of(RegistryKeys.WORLD, new Identifier(worldKeyString)), regionMap);
+            RegionBitmap regions = terrainCompound.contains(worldKeyString, NbtElement.LONG_ARRAY_TYPE) ? RegionBitmap.fromLongArray(terrainCompound.getLongArray(worldKeyString)) : RegionBitmap.fromBytes(terrainCompound.getByteArray(worldKeyString));
+            terrain().put(RegistryKey.of(RegistryKeys.WORLD, new Identifier(worldKeyString)), regions);
         }
 
         NbtCompound structuresCompound = nbt.getCompound(KEY_EXPLORED_STRUCTURES);
@@ -207,10 +159,28 @@ public interface SurveyorExploration {
         }
     }
 
+    /**
+     * A deep copy of this exploration for one world, safe to read off-thread while the original keeps changing.
+     */
+    default SurveyorExploration snapshot(RegistryKey<World> worldKey) {
+        RegionBitmap terrain = terrain().containsKey(worldKey) ? terrain().get(worldKey).copy() : new RegionBitmap();
+        Map<RegistryKey<Structure>, LongSet> structures = new HashMap<>();
+        structures().getOrDefault(worldKey, Map.of()).forEach((key, starts) -> structures.put(key, new LongOpenHashSet(starts)));
+        return new Snapshot(Map.of(worldKey, terrain), Map.of(worldKey, structures), Set.copyOf(sharedPlayers()));
+    }
+
+    default void mergeFrom(SurveyorExploration them) {
+        them.terrain().forEach((worldKey, regions) -> terrain().computeIfAbsent(worldKey, k -> new RegionBitmap()).or(regions));
+        them.structures().forEach((worldKey, starts) -> starts.forEach((key, positions) -> structures().computeIfAbsent(worldKey, k -> new HashMap<>()).computeIfAbsent(key, k -> new LongOpenHashSet()).addAll(positions)));
+    }
+
     default void copyFrom(SurveyorExploration them) {
         terrain().clear();
         terrain().putAll(them.terrain());
         structures().clear();
         structures().putAll(them.structures());
     }
+
+    record Snapshot(Map<RegistryKey<World>, RegionBitmap> terrain, Map<RegistryKey<World>, Map<RegistryKey<Structure>, LongSet>> structures, Set<UUID> sharedPlayers) implements SurveyorExploration {
+    }
 }
@@ -2,31 +2,41 @@ package folk.sisby.surveyor;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import folk.sisby.surveyor.landmark.Landmark;
 import folk.sisby.surveyor.landmark.LandmarkType;
+import folk.sisby.surveyor.packet.C2SKnownHashesPacket;
 import folk.sisby.surveyor.packet.C2SKnownLandmarksPacket;
 import folk.sisby.surveyor.packet.C2SKnownStructuresPacket;
 import folk.sisby.surveyor.packet.C2SKnownTerrainPacket;
 import folk.sisby.surveyor.packet.C2SPacket;
+import folk.sisby.surveyor.packet.S2CRegionHashesPacket;
 import folk.sisby.surveyor.packet.SyncLandmarksAddedPacket;
 import folk.sisby.surveyor.packet.SyncLandmarksRemovedPacket;
 import folk.sisby.surveyor.packet.S2CStructuresAddedPacket;
 import folk.sisby.surveyor.packet.S2CUpdateRegionPacket;
 import folk.sisby.surveyor.structure.StructureStartSummary;
+import folk.sisby.surveyor.util.RegionHashTree;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMaps;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.registry.RegistryKey;
-import net.minecraft.registry.tag.TagKey;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.gen.structure.Structure;
-import net.minecraft.world.gen.structure.StructureType;
 
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -35,48 +45,62 @@ public class SurveyorNetworking {
     public static Consumer<C2SPacket> C2S_SENDER = p -> {
     };
 
+    /**
+     * Diffs handshake requests against world summaries off the main thread. Single-threaded, so requests from a player are answered in order.
+     */
+    public static final ExecutorService REQUEST_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("Surveyor Requests").setDaemon(true).build());
+    private static final Map<UUID, Map<Identifier, C2SPacket>> PENDING_REQUESTS = new ConcurrentHashMap<>();
+
     public static void init() {
-        ServerPlayNetworking.registerGlobalReceiver(C2SKnownTerrainPacket.ID, (sv, p, h, b, se) -> handleServer(p, b, C2SKnownTerrainPacket::read, SurveyorNetworking::handleKnownTerrain));
-        ServerPlayNetworking.registerGlobalReceiver(C2SKnownStructuresPacket.ID, (sv, p, h, b, se) -> handleServer(p, b, C2SKnownStructuresPacket::read, SurveyorNetworking::handleKnownStructures));
-        ServerPlayNetworking.registerGlobalReceiver(C2SKnownLandmarksPacket.ID, (sv, p, h, b, se) -> handleServer(p, b, C2SKnownLandmarksPacket::read, SurveyorNetworking::handleKnownLandmarks));
+        ServerPlayNetworking.registerGlobalReceiver(C2SKnownHashesPacket.ID, (sv, p, h, b, se) -> handleRequest(p, b, C2SKnownHashesPacket::read, SurveyorNetworking::handleKnownHashes));
+        ServerPlayNetworking.registerGlobalReceiver(C2SKnownTerrainPacket.ID, (sv, p, h, b, se) -> handleRequest(p, b, C2SKnownTerrainPacket::read, SurveyorNetworking::handleKnownTerrain));
+        ServerPlayNetworking.registerGlobalReceiver(C2SKnownStructuresPacket.ID, (sv, p, h, b, se) -> handleRequest(p, b, C2SKnownStructuresPacket::read, SurveyorNetworking::handleKnownStructures));
+        ServerPlayNetworking.registerGlobalReceiver(C2SKnownLandmarksPacket.ID, (sv, p, h, b, se) -> handleRequest(p, b, C2SKnownLandmarksPacket::read, SurveyorNetworking::handleKnownLandmarks));
         ServerPlayNetworking.registerGlobalReceiver(SyncLandmarksAddedPacket.ID, (sv, p, h, b, se) -> handleServer(p, b, SyncLandmarksAddedPacket::read, SurveyorNetworking::handleLandmarksAdded));
         ServerPlayNetworking.registerGlobalReceiver(SyncLandmarksRemovedPacket.ID, (sv, p, h, b, se) -> handleServer(p, b, SyncLandmarksRemovedPacket::read, SurveyorNetworking::handleLandmarksRemoved));
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> PENDING_REQUESTS.remove(handler.getPlayer().getUuid()));
+    }
+
+    private static Long2LongMap diffHashes(RegionHashTree serverTree, long clientRoot) {
+        return serverTree.root() == clientRoot ? Long2LongMaps.EMPTY_MAP : serverTree.asMap();
     }
 
-    private static void handleKnownTerrain(ServerPlayerEntity player, ServerWorld world, WorldSummary summary, C2SKnownTerrainPacket packet) {
-        Map<ChunkPos, BitSet> serverBits = summary.terrain().bitSet(SurveyorExploration.of(player));
-        Map<ChunkPos, BitSet> clientBits = packet.regionBits();
-        serverBits.forEach((rPos, set) -> {
-            if (clientBits.containsKey(rPos)) set.andNot(clientBits.get(rPos));
+    private static void handleKnownHashes(ServerPlayerEntity player, ServerWorld world, WorldSummary summary, SurveyorExploration exploration, C2SKnownHashesPacket packet) {
+        Long2LongMap terrain = diffHashes(summary.terrain().getHashTree(exploration), packet.terrain());
+        Long2LongMap structures = diffHashes(summary.structures().getHashTree(exploration), packet.structures());
+        Long2LongMap landmarks = diffHashes(summary.landmarks().getHashTree(exploration), packet.landmarks());
+        if (!terrain.isEmpty() || !structures.isEmpty() || !landmarks.isEmpty()) new S2CRegionHashesPacket(terrain, structures, landmarks).send(player);
+    }
+
+    private static void handleKnownTerrain(ServerPlayerEntity player, ServerWorld world, WorldSummary summary, SurveyorExploration exploration, C2SKnownTerrainPacket packet) {
+        Map<ChunkPos, BitSet> view = summary.terrain().view();
+        Map<ChunkPos, BitSet> serverBits = new HashMap<>();
+        packet.regionBits().keySet().forEach(rPos -> {
+            if (view.containsKey(rPos)) serverBits.put(rPos, (BitSet) view.get(rPos).clone());
+        });
+        exploration.limitTerrainBitset(world.getRegistryKey(), serverBits);
+        packet.regionBits().forEach((rPos, clientSet) -> {
+            BitSet set = serverBits.get(rPos);
+            if (set == null) return;
+            set.andNot(clientSet);
             if (!set.isEmpty()) new S2CUpdateRegionPacket(rPos, summary.terrain().getRegion(rPos), set).send(player);
         });
     }
 
-    private static void handleKnownStructures(ServerPlayerEntity player, ServerWorld world, WorldSummary summary, C2SKnownStructuresPacket packet) {
-        Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> structures = summary.structures().asMap(SurveyorExploration.of(player));
-        packet.structureKeys().forEach((key, pos) -> {
-            if (structures.containsKey(key)) {
-                structures.get(key).remove(pos);
-                if (structures.get(key).isEmpty()) structures.remove(key);
-            }
+    private static void handleKnownStructures(ServerPlayerEntity player, ServerWorld world, WorldSummary summary, SurveyorExploration exploration, C2SKnownStructuresPacket packet) {
+        Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> structures = new HashMap<>();
+        summary.structures().forEach(exploration, (key, pos, start) -> {
+            if (packet.regions().contains(new ChunkPos(RegionHashTree.regionOf(pos))) && !packet.structureKeys().containsEntry(key, pos)) structures.computeIfAbsent(key, k -> new HashMap<>()).put(pos, start);
         });
-        if (structures.isEmpty()) return;
-        Map<RegistryKey<Structure>, RegistryKey<StructureType<?>>> structureTypes = new HashMap<>();
-        Multimap<RegistryKey<Structure>, TagKey<Structure>> structureTags = HashMultimap.create();
-        for (RegistryKey<Structure> key : structures.keySet()) {
-            structureTypes.put(key, summary.structures().getType(key));
-            structureTags.putAll(key, summary.structures().getTags(key));
-        }
-        new S2CStructuresAddedPacket(structures, structureTypes, structureTags).send(player);
+        if (!structures.isEmpty()) S2CStructuresAddedPacket.of(summary.structures(), structures).send(player);
     }
 
-    private static void handleKnownLandmarks(ServerPlayerEntity player, ServerWorld world, WorldSummary summary, C2SKnownLandmarksPacket packet) {
-        Map<LandmarkType<?>, Map<BlockPos, Landmark<?>>> landmarks = summary.landmarks().asMap(SurveyorExploration.of(player));
-        packet.landmarks().forEach((type, pos) -> {
-            if (landmarks.containsKey(type)) {
-                landmarks.get(type).remove(pos);
-                if (landmarks.get(type).isEmpty()) landmarks.remove(type);
-            }
+    private static void handleKnownLandmarks(ServerPlayerEntity player, ServerWorld world, WorldSummary summary, SurveyorExploration exploration, C2SKnownLandmarksPacket packet) {
+        Map<LandmarkType<?>, Map<BlockPos, Landmark<?>>> landmarks = new HashMap<>();
+        summary.landmarks().forEach(exploration, landmark -> {
+            if (!packet.regions().contains(new ChunkPos(RegionHashTree.regionOf(landmark.pos())))) return;
+            Long clientHash = packet.landmarks().getOrDefault(landmark.type(), Map.of()).get(landmark.pos());
+            if (clientHash == null || clientHash != RegionHashTree.hashLandmark(landmark)) landmarks.computeIfAbsent(landmark.type(), t -> new HashMap<>()).put(landmark.pos(), landmark);
         });
         if (!landmarks.isEmpty()) new SyncLandmarksAddedPacket(landmarks).send(player);
     }
@@ -99,10 +123,38 @@ public class SurveyorNetworking {
 
     private static <T extends C2SPacket> void handleServer(ServerPlayerEntity player, PacketByteBuf buf, Function<PacketByteBuf, T> reader, ServerPacketHandler<T> handler) {
         T packet = reader.apply(buf);
-        handler.handle(player, player.getServerWorld(), WorldSummary.of(player.getServerWorld()), packet);
+        player.getServer().execute(() -> handler.handle(player, player.getServerWorld(), WorldSummary.of(player.getServerWorld()), packet));
+    }
+
+    /**
+     * Coalesces requests per player and type - a request arriving before an earlier one of its type was picked up replaces it.
+     * Once the player's exploration has loaded, it's snapshotted on the server thread, then the request is handled on {@link #REQUEST_EXECUTOR}.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends C2SPacket> void handleRequest(ServerPlayerEntity player, PacketByteBuf buf, Function<PacketByteBuf, T> reader, ServerRequestHandler<T> handler) {
+        T packet = reader.apply(buf);
+        Map<Identifier, C2SPacket> pending = PENDING_REQUESTS.computeIfAbsent(player.getUuid(), k -> new ConcurrentHashMap<>());
+        if (pending.put(packet.getId(), packet) != null) return;
+        player.getServer().execute(() -> ExplorationStore.whenLoaded(player, () -> {
+            T latest = (T) pending.remove(packet.getId());
+            if (latest == null || player.isDisconnected()) return;
+            ServerWorld world = player.getServerWorld();
+            SurveyorExploration snapshot = SurveyorExploration.of(player).snapshot(world.getRegistryKey());
+            REQUEST_EXECUTOR.execute(() -> {
+                try {
+                    handler.handle(player, world, WorldSummary.of(world), snapshot, latest);
+                } catch (Exception e) {
+                    Surveyor.LOGGER.error("[Surveyor] Error handling {} request for {}.", latest.getId(), player.getGameProfile().getName(), e);
+                }
+            });
+        }));
     }
 
     public interface ServerPacketHandler<T extends C2SPacket> {
         void handle(ServerPlayerEntity player, ServerWorld world, WorldSummary summary, T packet);
     }
+
+    public interface ServerRequestHandler<T extends C2SPacket> {
+        void handle(ServerPlayerEntity player, ServerWorld world, WorldSummary summary, SurveyorExploration exploration, T packet);
+    }
 }
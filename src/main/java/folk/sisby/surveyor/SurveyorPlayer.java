@@ -1,8 +1,7 @@
 package folk.sisby.surveyor;
 
-import folk.sisby.surveyor.packet.S2CStructuresAddedPacket;
-import folk.sisby.surveyor.structure.WorldStructureSummary;
-import folk.sisby.surveyor.util.MapUtil;
+import com.google.common.collect.Multimap;
+import folk.sisby.surveyor.util.RegionBitmap;
 import it.unimi.dsi.fastutil.longs.LongSet;
 import net.minecraft.registry.RegistryKey;
 import net.minecraft.server.network.ServerPlayerEntity;
@@ -21,36 +20,128 @@ public interface SurveyorPlayer {
 
     int surveyor$getViewDistance();
 
-    record ServerPlayerExploration(ServerPlayerEntity player, Map<RegistryKey<World>, Map<ChunkPos, BitSet>> terrain, Map<RegistryKey<World>, Map<RegistryKey<Structure>, LongSet>> structures) implements SurveyorExploration {
+    final class ServerPlayerExploration implements SurveyorExploration {
         public static final String KEY_DATA = "surveyor";
 
+        private final ServerPlayerEntity player;
+        private final Map<RegistryKey<World>, RegionBitmap> terrain;
+        private final Map<RegistryKey<World>, Map<RegistryKey<Structure>, LongSet>> structures;
+        private boolean dirty = false;
+
+        public ServerPlayerExploration(ServerPlayerEntity player, Map<RegistryKey<World>, RegionBitmap> terrain, Map<RegistryKey<World>, Map<RegistryKey<Structure>, LongSet>> structures) {
+            this.player = player;
+            this.terrain = terrain;
+            this.structures = structures;
+        }
+
+        public ServerPlayerEntity player() {
+            return player;
+        }
+
+        @Override
+        public Map<RegistryKey<World>, RegionBitmap> terrain() {
+            return terrain;
+        }
+
+        @Override
+        public Map<RegistryKey<World>, Map<RegistryKey<Structure>, LongSet>> structures() {
+            return structures;
+        }
+
+        public boolean isDirty() {
+            return dirty;
+        }
+
+        public void markDirty() {
+            dirty = true;
+        }
+
+        public void markClean() {
+            dirty = false;
+        }
+
+        /**
+         * The exploration checks are made against - the player's group if they're in one.
+         */
+        private SurveyorExploration shared() {
+            ExplorationGroup group = ExplorationGroups.get(player.getServer(), player.getUuid());
+            return group == null ? this : group;
+        }
+
+        @Override
+        public boolean exploredChunk(RegistryKey<World> worldKey, ChunkPos pos) {
+            SurveyorExploration shared = shared();
+            return shared == this ? SurveyorExploration.super.exploredChunk(worldKey, pos) : shared.exploredChunk(worldKey, pos);
+        }
+
+        @Override
+        public boolean exploredStructure(RegistryKey<World> worldKey, RegistryKey<Structure> structure, ChunkPos pos) {
+            SurveyorExploration shared = shared();
+            return shared == this ? SurveyorExploration.super.exploredStructure(worldKey, structure, pos) : shared.exploredStructure(worldKey, structure, pos);
+        }
+
+        @Override
+        public Map<ChunkPos, BitSet> limitTerrainBitset(RegistryKey<World> worldKey, Map<ChunkPos, BitSet> bitSet) {
+            SurveyorExploration shared = shared();
+            return shared == this ? SurveyorExploration.super.limitTerrainBitset(worldKey, bitSet) : shared.limitTerrainBitset(worldKey, bitSet);
+        }
+
+        @Override
+        public Multimap<RegistryKey<Structure>, ChunkPos> limitStructureKeySet(RegistryKey<World> worldKey, Multimap<RegistryKey<Structure>, ChunkPos> keySet) {
+            SurveyorExploration shared = shared();
+            return shared == this ? SurveyorExploration.super.limitStructureKeySet(worldKey, keySet) : shared.limitStructureKeySet(worldKey, keySet);
+        }
+
+        @Override
+        public SurveyorExploration snapshot(RegistryKey<World> worldKey) {
+            SurveyorExploration shared = shared();
+            return shared == this ? SurveyorExploration.super.snapshot(worldKey) : shared.snapshot(worldKey);
+        }
+
+        @Override
+        public Set<UUID> sharedPlayers() {
+            SurveyorExploration shared = shared();
+            return shared == this ? Set.of(player.getUuid()) : shared.sharedPlayers();
+        }
+
+        @Override
+        public void copyFrom(SurveyorExploration them) {
+            SurveyorExploration.super.copyFrom(them);
+            dirty = true;
+        }
+
         @Override
         public void mergeRegion(RegistryKey<World> worldKey, ChunkPos regionPos, BitSet bitSet) {
             SurveyorExploration.super.mergeRegion(worldKey, regionPos, bitSet);
+            dirty = true;
             if (player.getServer().isHost(player.getGameProfile())) updateClientForMergeRegion(player.getServerWorld(), regionPos, bitSet);
-            // Sync to shared players if they don't have it
+            ExplorationGroup group = ExplorationGroups.get(player.getServer(), player.getUuid());
+            if (group != null) group.onRegionMerged(player.getUuid(), worldKey, regionPos, bitSet);
         }
 
         @Override
         public void addChunk(RegistryKey<World> worldKey, ChunkPos pos) {
+            boolean explored = terrain.containsKey(worldKey) && terrain.get(worldKey).contains(pos.x, pos.z);
+            boolean sharedExplored = explored || exploredChunk(worldKey, pos);
             SurveyorExploration.super.addChunk(worldKey, pos);
             if (player.getServer().isHost(player.getGameProfile())) updateClientForAddChunk(player.getServerWorld(), pos);
-            // Sync to shared players if its unexplored
+            if (explored) return;
+            dirty = true;
+            ExplorationGroup group = ExplorationGroups.get(player.getServer(), player.getUuid());
+            if (group != null) group.onChunkAdded(player.getUuid(), worldKey, pos);
+            ServerWorld world = player.getServer().getWorld(worldKey);
+            if (!sharedExplored && world != null) WorldSummary.of(world).landmarks().queueChunkSync(player, pos);
         }
 
         @Override
         public void addStructure(RegistryKey<World> worldKey, RegistryKey<Structure> structureKey, ChunkPos pos) {
             SurveyorExploration.super.addStructure(worldKey, structureKey, pos);
+            dirty = true;
             ServerWorld world = player.getServerWorld();
             if (player.getServer().isHost(player.getGameProfile())) updateClientForAddStructure(world, structureKey, pos);
-            WorldStructureSummary summary = WorldSummary.of(world).structures();
-            new S2CStructuresAddedPacket(Map.of(structureKey, Map.of(pos, summary.get(structureKey, pos))), Map.of(structureKey, summary.getType(structureKey)), MapUtil.asMultiMap(Map.of(structureKey, summary.getTags(structureKey)))).send(player);
-            // Send to shared players if they don't have it
-        }
-
-        @Override
-        public Set<UUID> sharedPlayers() {
-            return Set.of(player.getUuid());
+            WorldSummary.of(world).structures().queueSync(player, structureKey, pos);
+            ExplorationGroup group = ExplorationGroups.get(player.getServer(), player.getUuid());
+            if (group != null) group.onStructureAdded(player, worldKey, structureKey, pos);
         }
     }
 }
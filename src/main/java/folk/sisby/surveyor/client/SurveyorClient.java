@@ -5,10 +5,10 @@ import folk.sisby.surveyor.Surveyor;
 import folk.sisby.surveyor.SurveyorEvents;
 import folk.sisby.surveyor.SurveyorExploration;
 import folk.sisby.surveyor.WorldSummary;
-import folk.sisby.surveyor.packet.C2SKnownLandmarksPacket;
-import folk.sisby.surveyor.packet.C2SKnownStructuresPacket;
+import folk.sisby.surveyor.packet.C2SKnownHashesPacket;
 import folk.sisby.surveyor.packet.C2SKnownTerrainPacket;
 import folk.sisby.surveyor.terrain.WorldTerrainSummary;
+import folk.sisby.surveyor.util.RegionBitmap;
 import it.unimi.dsi.fastutil.longs.LongSet;
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientChunkEvents;
@@ -117,13 +117,15 @@ public class SurveyorClient implements ClientModInitializer {
                 SurveyorClientEvents.INITIALIZING_WORLD = false;
                 if (WorldSummary.of(world).isClient()) {
                     WorldSummary summary = WorldSummary.of(world);
-                    new C2SKnownTerrainPacket(summary.terrain().bitSet(null)).send();
-                    new C2SKnownStructuresPacket(summary.structures().keySet(null)).send();
-                    new C2SKnownLandmarksPacket(summary.landmarks().keySet(null)).send();
+                    new C2SKnownHashesPacket(summary.terrain().getHashTree().root(), summary.structures().getHashTree().root(), summary.landmarks().getHashTree().root()).send();
                 }
                 SurveyorClientEvents.Invoke.worldLoad(MinecraftClient.getInstance().player.clientWorld, MinecraftClient.getInstance().player);
             }
         }));
+        ClientTickEvents.END_WORLD_TICK.register(world -> {
+            if (WorldSummary.of(world).isClient()) WorldSummary.of(world).landmarks().flushSync(world);
+            SurveyorClientEvents.Invoke.flushExplored(world);
+        });
         SurveyorEvents.Register.landmarksAdded(new Identifier(Surveyor.ID, "client"), ((world, worldLandmarks, landmarks) -> {
             SurveyorExploration exploration = getExploration();
             if (exploration != null) SurveyorClientEvents.Invoke.landmarksAdded(world, exploration.limitLandmarkKeySet(world.getRegistryKey(), worldLandmarks, HashMultimap.create(landmarks)));
@@ -131,7 +133,7 @@ public class SurveyorClient implements ClientModInitializer {
         SurveyorEvents.Register.landmarksRemoved(new Identifier(Surveyor.ID, "client"), (world, summary, landmarks) -> SurveyorClientEvents.Invoke.landmarksRemoved(world, landmarks));
     }
 
-    private record ClientExploration(Map<RegistryKey<World>, Map<ChunkPos, BitSet>> terrain, Map<RegistryKey<World>, Map<RegistryKey<Structure>, LongSet>> structures) implements SurveyorExploration {
+    private record ClientExploration(Map<RegistryKey<World>, RegionBitmap> terrain, Map<RegistryKey<World>, Map<RegistryKey<Structure>, LongSet>> structures) implements SurveyorExploration {
         public static final String KEY_SHARED = "shared";
         public static final ClientExploration INSTANCE = new ClientExploration(new HashMap<>(), new HashMap<>());
         public static final ClientExploration SHARED = new ClientExploration(new HashMap<>(), new HashMap<>());
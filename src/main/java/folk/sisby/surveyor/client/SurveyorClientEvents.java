@@ -1,11 +1,13 @@
 package folk.sisby.surveyor.client;
 
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 import folk.sisby.surveyor.SurveyorExploration;
 import folk.sisby.surveyor.WorldSummary;
 import folk.sisby.surveyor.landmark.LandmarkType;
 import folk.sisby.surveyor.landmark.WorldLandmarks;
 import folk.sisby.surveyor.structure.WorldStructureSummary;
+import folk.sisby.surveyor.terrain.RegionSummary;
 import folk.sisby.surveyor.terrain.WorldTerrainSummary;
 import folk.sisby.surveyor.util.MapUtil;
 import net.minecraft.client.network.ClientPlayerEntity;
@@ -17,6 +19,7 @@ import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
 import net.minecraft.world.gen.structure.Structure;
 
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
@@ -29,6 +32,7 @@ public class SurveyorClientEvents {
     private static final Map<Identifier, StructuresAdded> structuresAdded = new HashMap<>();
     private static final Map<Identifier, LandmarksAdded> landmarksAdded = new HashMap<>();
     private static final Map<Identifier, LandmarksRemoved> landmarksRemoved = new HashMap<>();
+    private static final Map<World, Map<ChunkPos, BitSet>> pendingExplored = new HashMap<>();
     public static boolean INITIALIZING_WORLD = false;
 
     public static class Invoke {
@@ -52,6 +56,42 @@ public class SurveyorClientEvents {
             terrainUpdated(world, List.of(pos));
         }
 
+        /**
+         * Queues newly explored chunks to be announced by the next {@link #flushExplored}, so a tick's worth of exploration causes one update.
+         */
+        public static void queueExplored(World world, ChunkPos regionPos, BitSet bitSet) {
+            synchronized (pendingExplored) {
+                pendingExplored.computeIfAbsent(world, w -> new HashMap<>()).computeIfAbsent(regionPos, r -> new BitSet()).or(bitSet);
+            }
+        }
+
+        public static void queueExplored(World world, ChunkPos pos) {
+            synchronized (pendingExplored) {
+                pendingExplored.computeIfAbsent(world, w -> new HashMap<>()).computeIfAbsent(new ChunkPos(RegionSummary.chunkToRegion(pos.x), RegionSummary.chunkToRegion(pos.z)), r -> new BitSet()).set(RegionSummary.bitForChunk(pos));
+            }
+        }
+
+        /**
+         * Announces the chunks explored in a world since the last flush, along with the unowned landmarks they revealed - called once per world tick.
+         */
+        public static void flushExplored(World world) {
+            Map<ChunkPos, BitSet> explored;
+            synchronized (pendingExplored) {
+                explored = pendingExplored.remove(world);
+            }
+            if (explored == null) return;
+            List<ChunkPos> chunks = new ArrayList<>();
+            explored.forEach((regionPos, bitSet) -> bitSet.stream().forEach(i -> chunks.add(RegionSummary.chunkForBit(regionPos, i))));
+            terrainUpdated(world, chunks);
+            if (landmarksAdded.isEmpty()) return;
+            WorldLandmarks worldLandmarks = WorldSummary.of(world).landmarks();
+            Multimap<LandmarkType<?>, BlockPos> landmarks = HashMultimap.create();
+            for (ChunkPos pos : chunks) {
+                landmarks.putAll(worldLandmarks.unownedKeySet(pos));
+            }
+            landmarksAdded(world, landmarks);
+        }
+
         public static void structuresAdded(World world, Multimap<RegistryKey<Structure>, ChunkPos> structures) {
             if (structuresAdded.isEmpty() || structures.isEmpty()) return;
             WorldStructureSummary summary = WorldSummary.of(world).structures();
@@ -7,18 +7,32 @@ import folk.sisby.surveyor.SurveyorExploration;
 import folk.sisby.surveyor.SurveyorNetworking;
 import folk.sisby.surveyor.WorldSummary;
 import folk.sisby.surveyor.landmark.LandmarkType;
+import folk.sisby.surveyor.packet.C2SKnownLandmarksPacket;
+import folk.sisby.surveyor.packet.C2SKnownStructuresPacket;
+import folk.sisby.surveyor.packet.C2SKnownTerrainPacket;
 import folk.sisby.surveyor.packet.S2CPacket;
+import folk.sisby.surveyor.packet.S2CRegionHashesPacket;
 import folk.sisby.surveyor.packet.S2CStructuresAddedPacket;
 import folk.sisby.surveyor.packet.S2CUpdateRegionPacket;
 import folk.sisby.surveyor.packet.SyncLandmarksAddedPacket;
 import folk.sisby.surveyor.packet.SyncLandmarksRemovedPacket;
 import folk.sisby.surveyor.terrain.RegionSummary;
+import folk.sisby.surveyor.util.RegionHashTree;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.world.ClientWorld;
 import net.minecraft.network.PacketByteBuf;
+import net.minecraft.registry.RegistryKey;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.gen.structure.Structure;
 
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 
 public class SurveyorClientNetworking {
@@ -27,12 +41,45 @@ public class SurveyorClientNetworking {
             if (!ClientPlayNetworking.canSend(p.getId())) return;
             p.toBufs().forEach(buf -> ClientPlayNetworking.send(p.getId(), buf));
         };
+        ClientPlayNetworking.registerGlobalReceiver(S2CRegionHashesPacket.ID, (c, h, b, s) -> handleClient(b, S2CRegionHashesPacket::read, SurveyorClientNetworking::handleRegionHashes));
         ClientPlayNetworking.registerGlobalReceiver(S2CStructuresAddedPacket.ID, (c, h, b, s) -> handleClient(b, S2CStructuresAddedPacket::read, SurveyorClientNetworking::handleStructuresAdded));
         ClientPlayNetworking.registerGlobalReceiver(S2CUpdateRegionPacket.ID, (c, h, b, s) -> handleClientUnparsed(b, SurveyorClientNetworking::handleTerrainAdded));
         ClientPlayNetworking.registerGlobalReceiver(SyncLandmarksAddedPacket.ID, (c, h, b, s) -> handleClient(b, SyncLandmarksAddedPacket::read, SurveyorClientNetworking::handleLandmarksAdded));
         ClientPlayNetworking.registerGlobalReceiver(SyncLandmarksRemovedPacket.ID, (c, h, b, s) -> handleClient(b, SyncLandmarksRemovedPacket::read, SurveyorClientNetworking::handleLandmarksRemoved));
     }
 
+    private static Set<ChunkPos> diffRegions(RegionHashTree clientTree, Long2LongMap serverHashes) {
+        Set<ChunkPos> regions = new HashSet<>();
+        for (Long2LongMap.Entry entry : serverHashes.long2LongEntrySet()) {
+            if (clientTree.get(entry.getLongKey()) != entry.getLongValue()) regions.add(new ChunkPos(entry.getLongKey()));
+        }
+        return regions;
+    }
+
+    private static void handleRegionHashes(ClientWorld world, WorldSummary summary, S2CRegionHashesPacket packet) {
+        Set<ChunkPos> terrainRegions = diffRegions(summary.terrain().getHashTree(), packet.terrain());
+        if (!terrainRegions.isEmpty()) {
+            Map<ChunkPos, BitSet> bitSet = summary.terrain().bitSet(null);
+            Map<ChunkPos, BitSet> knownTerrain = new HashMap<>();
+            terrainRegions.forEach(rPos -> knownTerrain.put(rPos, bitSet.getOrDefault(rPos, new BitSet(RegionSummary.BITSET_SIZE))));
+            new C2SKnownTerrainPacket(knownTerrain).send();
+        }
+        Set<ChunkPos> structureRegions = diffRegions(summary.structures().getHashTree(), packet.structures());
+        if (!structureRegions.isEmpty()) {
+            Multimap<RegistryKey<Structure>, ChunkPos> knownStructures = summary.structures().keySet(null);
+            knownStructures.entries().removeIf(e -> !structureRegions.contains(new ChunkPos(RegionHashTree.regionOf(e.getValue()))));
+            new C2SKnownStructuresPacket(structureRegions, knownStructures).send();
+        }
+        Set<ChunkPos> landmarkRegions = diffRegions(summary.landmarks().getHashTree(), packet.landmarks());
+        if (!landmarkRegions.isEmpty()) {
+            Map<LandmarkType<?>, Map<BlockPos, Long>> knownLandmarks = new HashMap<>();
+            summary.landmarks().forEach(null, landmark -> {
+                if (landmarkRegions.contains(new ChunkPos(RegionHashTree.regionOf(landmark.pos())))) knownLandmarks.computeIfAbsent(landmark.type(), t -> new HashMap<>()).put(landmark.pos(), RegionHashTree.hashLandmark(landmark));
+            });
+            new C2SKnownLandmarksPacket(landmarkRegions, knownLandmarks).send();
+        }
+    }
+
     private static void handleStructuresAdded(ClientWorld world, WorldSummary summary, S2CStructuresAddedPacket packet) {
         packet.structures().forEach((key, map) -> map.forEach((pos, start) -> summary.structures().put(world, key, pos, start, packet.structureTypes().get(key), packet.structureTags().get(key))));
         if (MinecraftClient.getInstance().player != null) {
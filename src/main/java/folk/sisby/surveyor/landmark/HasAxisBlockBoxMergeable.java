@@ -4,44 +4,62 @@ import com.google.common.collect.Multimap;
 import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
-import java.util.Map;
 
 public interface HasAxisBlockBoxMergeable extends HasAxis, HasBlockBox {
-    private static Multimap<LandmarkType<?>, BlockPos> tryMergeOnce(Multimap<LandmarkType<?>, BlockPos> changed, World world, WorldLandmarks landmarks) {
-        Map<LandmarkType<?>, Map<BlockPos, Landmark<?>>> mergeableLandmarks = landmarks.asMap(null);
+    /**
+     * The box covering both boxes, or null if it would cover any blocks outside them.
+     */
+    private static @Nullable BlockBox merge(BlockBox box, BlockBox box2) {
+        BlockBox joined = BlockBox.encompass(List.of(box, box2)).orElseThrow();
+        return joined.getBlockCountX() * joined.getBlockCountY() * joined.getBlockCountZ() == box.getBlockCountX() * box.getBlockCountY() * box.getBlockCountZ() + box2.getBlockCountX() * box2.getBlockCountY() * box2.getBlockCountZ() ? joined : null;
+    }
 
-        for (Map<BlockPos, Landmark<?>> posMap : mergeableLandmarks.values()) {
-            for (Landmark<?> genericLandmark : posMap.values()) {
-                if (!(genericLandmark instanceof HasAxisBlockBoxMergeable landmark)) break;
-                for (Landmark<?> genericLandmark2 : posMap.values()) {
-                    if (!(genericLandmark2 instanceof HasAxisBlockBoxMergeable landmark2)) break;
-                    if (genericLandmark == genericLandmark2) continue;
-                    if (landmark.axis().equals(landmark2.axis())) {
-                        BlockBox joined = BlockBox.encompass(List.of(landmark.box(), landmark2.box())).orElseThrow();
-                        if (joined.getBlockCountX() * joined.getBlockCountY() * joined.getBlockCountZ() == landmark.box().getBlockCountX() * landmark.box().getBlockCountY() * landmark.box().getBlockCountZ() + landmark2.box().getBlockCountX() * landmark2.box().getBlockCountY() * landmark2.box().getBlockCountZ()) {
-                            genericLandmark.remove(changed, world, landmarks);
-                            genericLandmark2.remove(changed, world, landmarks);
-                            landmark.box().encompass(landmark2.box());
-                            genericLandmark.put(changed, world, landmarks);
-                            return changed;
-                        }
-                    }
-                }
-            }
-        }
-        return changed;
+    /**
+     * A new landmark like this one, covering a different box. Landmarks are shared with views and sync batches, so merges never change a box in place.
+     */
+    Landmark<?> withBox(BlockBox box);
+
+    /**
+     * The blocks just outside each face of a box, at the face's minimum corner.
+     * Any box that can merge with this one shares a whole face with it, so it must contain one of these blocks.
+     */
+    private static List<BlockPos> faceNeighbours(BlockBox box) {
+        return List.of(
+            new BlockPos(box.getMinX() - 1, box.getMinY(), box.getMinZ()),
+            new BlockPos(box.getMaxX() + 1, box.getMinY(), box.getMinZ()),
+            new BlockPos(box.getMinX(), box.getMinY() - 1, box.getMinZ()),
+            new BlockPos(box.getMinX(), box.getMaxY() + 1, box.getMinZ()),
+            new BlockPos(box.getMinX(), box.getMinY(), box.getMinZ() - 1),
+            new BlockPos(box.getMinX(), box.getMinY(), box.getMaxZ() + 1)
+        );
     }
 
+    /**
+     * Replaces this landmark and any neighbouring boxes of the same type and axis with one merged landmark, until none are left.
+     * Only the blocks adjacent to the box are looked up, so the cost doesn't depend on how many landmarks the world has.
+     */
     default Multimap<LandmarkType<?>, BlockPos> tryMerge(Multimap<LandmarkType<?>, BlockPos> changed, World world, WorldLandmarks landmarks) {
-        int oldSize;
-        int newSize;
+        Landmark<?> current = (Landmark<?>) this;
+        boolean merged;
         do {
-            oldSize = changed.size();
-            tryMergeOnce(changed, world, landmarks);
-            newSize = changed.size();
-        } while (newSize > oldSize);
+            merged = false;
+            HasAxisBlockBoxMergeable self = (HasAxisBlockBoxMergeable) current;
+            for (BlockPos neighbour : faceNeighbours(self.box())) {
+                Landmark<?> other = landmarks.getMergeableAt(current.type(), neighbour);
+                if (!(other instanceof HasAxisBlockBoxMergeable mergeable) || other == current || !self.axis().equals(mergeable.axis())) continue;
+                BlockBox joined = merge(self.box(), mergeable.box());
+                if (joined == null) continue;
+                current.remove(changed, world, landmarks);
+                other.remove(changed, world, landmarks);
+                current = self.withBox(joined);
+                landmarks.putForBatch(changed, current);
+                merged = true;
+                break;
+            }
+        } while (merged);
         return changed;
     }
 }
@@ -1,6 +1,10 @@
 package folk.sisby.surveyor.landmark;
 
 import com.mojang.serialization.Codec;
+import folk.sisby.surveyor.Surveyor;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtOps;
+import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
 
@@ -8,4 +12,16 @@ public interface LandmarkType<T extends Landmark<T>> {
     Identifier id();
 
     Codec<T> createCodec(BlockPos pos);
+
+    /**
+     * Writes a landmark for networking, without its position.
+     * Types should override this (and {@link #readBuf}) with a direct binary encoding - the default round-trips the codec through NBT.
+     */
+    default void writeBuf(PacketByteBuf buf, T landmark) {
+        buf.writeNbt((NbtCompound) createCodec(landmark.pos()).encodeStart(NbtOps.INSTANCE, landmark).getOrThrow(false, Surveyor.LOGGER::error));
+    }
+
+    default T readBuf(PacketByteBuf buf, BlockPos pos) {
+        return createCodec(pos).parse(NbtOps.INSTANCE, buf.readNbt()).getOrThrow(false, Surveyor.LOGGER::error);
+    }
 }
@@ -7,6 +7,7 @@ import folk.sisby.surveyor.util.DispatchMapCodec;
 import folk.sisby.surveyor.util.SurveyorCodecs;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtOps;
+import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
 
@@ -52,6 +53,11 @@ public class Landmarks {
         return CODEC.decode(NbtOps.INSTANCE, nbt.getCompound(KEY_LANDMARKS)).getOrThrow(false, Surveyor.LOGGER::error).getFirst();
     }
 
+    @SuppressWarnings("unchecked")
+    public static <T extends Landmark<T>> void writeBuf(PacketByteBuf buf, Landmark<T> landmark) {
+        landmark.type().writeBuf(buf, (T) landmark);
+    }
+
     public static LandmarkType<?> getType(Identifier id) {
         return TYPES.get(id);
     }
@@ -24,7 +24,19 @@ public record NetherPortalLandmark(BlockBox box, Direction.Axis axis) implements
         pos -> RecordCodecBuilder.create(instance -> instance.group(
             BlockBox.CODEC.fieldOf("box").forGetter(HasBlockBox::box),
             Direction.Axis.CODEC.fieldOf("axis").forGetter(HasAxis::axis)
-        ).apply(instance, NetherPortalLandmark::new))
+        ).apply(instance, NetherPortalLandmark::new)),
+        (buf, landmark) -> {
+            buf.writeVarInt(landmark.box().getMaxX() - landmark.box().getMinX());
+            buf.writeVarInt(landmark.box().getMaxY() - landmark.box().getMinY());
+            buf.writeVarInt(landmark.box().getMaxZ() - landmark.box().getMinZ());
+            buf.writeEnumConstant(landmark.axis());
+        },
+        (buf, pos) -> {
+            int maxX = pos.getX() + buf.readVarInt();
+            int maxY = pos.getY() + buf.readVarInt();
+            int maxZ = pos.getZ() + buf.readVarInt();
+            return new NetherPortalLandmark(new BlockBox(pos.getX(), pos.getY(), pos.getZ(), maxX, maxY, maxZ), buf.readEnumConstant(Direction.Axis.class));
+        }
     );
 
     @Override
@@ -38,6 +50,11 @@ public record NetherPortalLandmark(BlockBox box, Direction.Axis axis) implements
         return tryMerge(changes, world, landmarks);
     }
 
+    @Override
+    public NetherPortalLandmark withBox(BlockBox box) {
+        return new NetherPortalLandmark(box, axis);
+    }
+
     @Override
     public BlockPos pos() {
         return new BlockPos(box.getMinX(), box.getMinY(), box.getMinZ());
@@ -20,7 +20,20 @@ public record PlayerDeathLandmark(BlockPos pos, UUID owner, Text name, long crea
             Codecs.TEXT.fieldOf("name").forGetter(Landmark::name),
             Codec.LONG.fieldOf("created").forGetter(HasCreated::created),
             Codec.INT.fieldOf("seed").forGetter(HasSeed::seed)
-        ).apply(instance, (owner, name, created, seed) -> new PlayerDeathLandmark(pos, owner, name, created, seed)))
+        ).apply(instance, (owner, name, created, seed) -> new PlayerDeathLandmark(pos, owner, name, created, seed))),
+        (buf, landmark) -> {
+            buf.writeUuid(landmark.owner());
+            buf.writeText(landmark.name());
+            buf.writeVarLong(landmark.created());
+            buf.writeInt(landmark.seed());
+        },
+        (buf, pos) -> {
+            UUID owner = buf.readUuid();
+            Text name = buf.readText();
+            long created = buf.readVarLong();
+            int seed = buf.readInt();
+            return new PlayerDeathLandmark(pos, owner, name, created, seed);
+        }
     );
 
     @Override
@@ -1,14 +1,36 @@
 package folk.sisby.surveyor.landmark;
 
 import com.mojang.serialization.Codec;
+import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
-public record SimpleLandmarkType<T extends Landmark<T>>(Identifier id, Function<BlockPos, Codec<T>> codec) implements LandmarkType<T> {
+public record SimpleLandmarkType<T extends Landmark<T>>(Identifier id, Function<BlockPos, Codec<T>> codec, @Nullable BiConsumer<PacketByteBuf, T> bufWriter, @Nullable BiFunction<PacketByteBuf, BlockPos, T> bufReader) implements LandmarkType<T> {
+    public SimpleLandmarkType(Identifier id, Function<BlockPos, Codec<T>> codec) {
+        this(id, codec, null, null);
+    }
+
     @Override
     public Codec<T> createCodec(BlockPos pos) {
         return codec.apply(pos);
     }
+
+    @Override
+    public void writeBuf(PacketByteBuf buf, T landmark) {
+        if (bufWriter == null || bufReader == null) {
+            LandmarkType.super.writeBuf(buf, landmark);
+        } else {
+            bufWriter.accept(buf, landmark);
+        }
+    }
+
+    @Override
+    public T readBuf(PacketByteBuf buf, BlockPos pos) {
+        return bufWriter == null || bufReader == null ? LandmarkType.super.readBuf(buf, pos) : bufReader.apply(buf, pos);
+    }
 }
@@ -2,6 +2,7 @@ package folk.sisby.surveyor.landmark;
 
 import com.mojang.serialization.codecs.RecordCodecBuilder;
 import folk.sisby.surveyor.Surveyor;
+import net.minecraft.network.PacketByteBuf;
 import net.minecraft.text.Text;
 import net.minecraft.util.DyeColor;
 import net.minecraft.util.Identifier;
@@ -19,7 +20,20 @@ public record SimplePointLandmark(BlockPos pos, UUID owner, DyeColor color, Text
                     DyeColor.CODEC.fieldOf("color").orElse(null).forGetter(Landmark::color),
                     Codecs.TEXT.fieldOf("name").orElse(null).forGetter(Landmark::name),
                     Identifier.CODEC.fieldOf("texture").orElse(null).forGetter(Landmark::texture)
-            ).apply(instance, (owner, color, name, texture) -> new SimplePointLandmark(pos, owner, color, name, texture)))
+            ).apply(instance, (owner, color, name, texture) -> new SimplePointLandmark(pos, owner, color, name, texture))),
+            (buf, landmark) -> {
+                buf.writeNullable(landmark.owner(), PacketByteBuf::writeUuid);
+                buf.writeNullable(landmark.color(), PacketByteBuf::writeEnumConstant);
+                buf.writeNullable(landmark.name(), PacketByteBuf::writeText);
+                buf.writeNullable(landmark.texture(), PacketByteBuf::writeIdentifier);
+            },
+            (buf, pos) -> {
+                UUID owner = buf.readNullable(PacketByteBuf::readUuid);
+                DyeColor color = buf.readNullable(b -> b.readEnumConstant(DyeColor.class));
+                Text name = buf.readNullable(PacketByteBuf::readText);
+                Identifier texture = buf.readNullable(PacketByteBuf::readIdentifier);
+                return new SimplePointLandmark(pos, owner, color, name, texture);
+            }
     );
 
     @Override
@@ -2,6 +2,7 @@ package folk.sisby.surveyor.landmark;
 
 import com.mojang.serialization.codecs.RecordCodecBuilder;
 import folk.sisby.surveyor.Surveyor;
+import net.minecraft.network.PacketByteBuf;
 import net.minecraft.registry.RegistryKey;
 import net.minecraft.registry.RegistryKeys;
 import net.minecraft.text.Text;
@@ -19,7 +20,20 @@ public record SimplePointOfInterestLandmark(BlockPos pos, RegistryKey<PointOfInt
                     DyeColor.CODEC.fieldOf("color").orElse(null).forGetter(Landmark::color),
                     Codecs.TEXT.fieldOf("name").orElse(null).forGetter(Landmark::name),
                     Identifier.CODEC.fieldOf("texture").orElse(null).forGetter(Landmark::texture)
-            ).apply(instance, (poiType, color, name, texture) -> new SimplePointOfInterestLandmark(pos, poiType, color, name, texture)))
+            ).apply(instance, (poiType, color, name, texture) -> new SimplePointOfInterestLandmark(pos, poiType, color, name, texture))),
+            (buf, landmark) -> {
+                buf.writeRegistryKey(landmark.poiType());
+                buf.writeNullable(landmark.color(), PacketByteBuf::writeEnumConstant);
+                buf.writeNullable(landmark.name(), PacketByteBuf::writeText);
+                buf.writeNullable(landmark.texture(), PacketByteBuf::writeIdentifier);
+            },
+            (buf, pos) -> {
+                RegistryKey<PointOfInterestType> poiType = buf.readRegistryKey(RegistryKeys.POINT_OF_INTEREST_TYPE);
+                DyeColor color = buf.readNullable(b -> b.readEnumConstant(DyeColor.class));
+                Text name = buf.readNullable(PacketByteBuf::readText);
+                Identifier texture = buf.readNullable(PacketByteBuf::readIdentifier);
+                return new SimplePointOfInterestLandmark(pos, poiType, color, name, texture);
+            }
     );
 
     @Override
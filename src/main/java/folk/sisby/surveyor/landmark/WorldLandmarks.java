@@ -1,36 +1,146 @@
 package folk.sisby.surveyor.landmark;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import folk.sisby.surveyor.Surveyor;
 import folk.sisby.surveyor.SurveyorEvents;
 import folk.sisby.surveyor.SurveyorExploration;
 import folk.sisby.surveyor.packet.SyncLandmarksAddedPacket;
 import folk.sisby.surveyor.packet.SyncLandmarksRemovedPacket;
+import folk.sisby.surveyor.packet.SyncPacket;
+import folk.sisby.surveyor.terrain.RegionSummary;
 import folk.sisby.surveyor.util.MapUtil;
+import folk.sisby.surveyor.util.RegionHashTree;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtIo;
 import net.minecraft.registry.RegistryKey;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 public class WorldLandmarks {
+    public static final int DEFERRED_INTERVAL = 20;
     protected final RegistryKey<World> worldKey;
     protected final Map<LandmarkType<?>, Map<BlockPos, Landmark<?>>> landmarks = new ConcurrentHashMap<>();
-    protected boolean dirty = false;
+    protected final RegionHashTree hashTree = new RegionHashTree();
+    /**
+     * Guards the landmark indices - {@link #byRegion}, {@link #unownedByChunk}, {@link #ownedByPlayer} and {@link #mergeableBlocks}.
+     */
+    private final Object lock = new Object();
+    protected final Long2ObjectMap<Multimap<LandmarkType<?>, BlockPos>> unownedByChunk = new Long2ObjectOpenHashMap<>();
+    protected final Map<UUID, Multimap<LandmarkType<?>, BlockPos>> ownedByPlayer = new HashMap<>();
+    protected final Map<LandmarkType<?>, Long2ObjectMap<BlockPos>> mergeableBlocks = new HashMap<>();
+    protected final Map<ServerPlayerEntity, Multimap<LandmarkType<?>, BlockPos>> pendingSync = new HashMap<>();
+    protected final Map<ServerPlayerEntity, Multimap<LandmarkType<?>, BlockPos>> pendingTargetedSync = new HashMap<>();
+    protected final Map<ServerPlayerEntity, Multimap<LandmarkType<?>, BlockPos>> deferredSync = new HashMap<>();
+    protected final Long2ObjectMap<Multimap<LandmarkType<?>, BlockPos>> byRegion = new Long2ObjectOpenHashMap<>();
+    protected final LongSet dirtyRegions = new LongOpenHashSet();
+    protected final Map<LandmarkType<?>, Map<BlockPos, Landmark<?>>> view = Collections.unmodifiableMap(Maps.transformValues(landmarks, Collections::unmodifiableMap));
+    protected boolean migratingLegacy = false;
 
     public WorldLandmarks(RegistryKey<World> worldKey, Map<LandmarkType<?>, Map<BlockPos, Landmark<?>>> landmarks) {
         this.worldKey = worldKey;
-        this.landmarks.putAll(landmarks);
+        landmarks.forEach((type, map) -> this.landmarks.put(type, new ConcurrentHashMap<>(map)));
+        this.landmarks.forEach((type, map) -> map.forEach((pos, landmark) -> {
+            hashTree.toggle(landmark);
+            index(landmark);
+        }));
+    }
+
+    protected void index(Landmark<?> landmark) {
+        synchronized (lock) {
+            byRegion.computeIfAbsent(RegionHashTree.regionOf(landmark.pos()), k -> HashMultimap.create()).put(landmark.type(), landmark.pos());
+            if (landmark instanceof HasAxisBlockBoxMergeable mergeable) {
+                Long2ObjectMap<BlockPos> blocks = mergeableBlocks.computeIfAbsent(landmark.type(), t -> new Long2ObjectOpenHashMap<>());
+                BlockPos.stream(mergeable.box()).forEach(pos -> blocks.put(pos.asLong(), landmark.pos()));
+            }
+            if (landmark.owner() == null) {
+                unownedByChunk.computeIfAbsent(ChunkPos.toLong(landmark.pos().getX() >> 4, landmark.pos().getZ() >> 4), k -> HashMultimap.create()).put(landmark.type(), landmark.pos());
+            } else {
+                ownedByPlayer.computeIfAbsent(landmark.owner(), k -> HashMultimap.create()).put(landmark.type(), landmark.pos());
+            }
+        }
+    }
+
+    protected void unindex(Landmark<?> landmark) {
+        synchronized (lock) {
+            long region = RegionHashTree.regionOf(landmark.pos());
+            Multimap<LandmarkType<?>, BlockPos> regionKeys = byRegion.get(region);
+            if (regionKeys != null && regionKeys.remove(landmark.type(), landmark.pos()) && regionKeys.isEmpty()) byRegion.remove(region);
+            if (landmark instanceof HasAxisBlockBoxMergeable mergeable && mergeableBlocks.containsKey(landmark.type())) {
+                Long2ObjectMap<BlockPos> blocks = mergeableBlocks.get(landmark.type());
+                BlockPos.stream(mergeable.box()).forEach(pos -> blocks.remove(pos.asLong(), landmark.pos()));
+                if (blocks.isEmpty()) mergeableBlocks.remove(landmark.type());
+            }
+            if (landmark.owner() == null) {
+                long chunk = ChunkPos.toLong(landmark.pos().getX() >> 4, landmark.pos().getZ() >> 4);
+                Multimap<LandmarkType<?>, BlockPos> bucket = unownedByChunk.get(chunk);
+                if (bucket != null && bucket.remove(landmark.type(), landmark.pos()) && bucket.isEmpty()) unownedByChunk.remove(chunk);
+            } else {
+                Multimap<LandmarkType<?>, BlockPos> bucket = ownedByPlayer.get(landmark.owner());
+                if (bucket != null && bucket.remove(landmark.type(), landmark.pos()) && bucket.isEmpty()) ownedByPlayer.remove(landmark.owner());
+            }
+        }
+    }
+
+    /**
+     * The mergeable landmark whose box contains a block, if any.
+     */
+    public @Nullable Landmark<?> getMergeableAt(LandmarkType<?> type, BlockPos pos) {
+        BlockPos landmarkPos;
+        synchronized (lock) {
+            Long2ObjectMap<BlockPos> blocks = mergeableBlocks.get(type);
+            landmarkPos = blocks == null ? null : blocks.get(pos.asLong());
+        }
+        return landmarkPos == null || !contains(type, landmarkPos) ? null : landmarks.get(type).get(landmarkPos);
+    }
+
+    /**
+     * The unowned landmarks in a chunk, which become visible to a player when they explore it.
+     */
+    public Multimap<LandmarkType<?>, BlockPos> unownedKeySet(ChunkPos chunkPos) {
+        synchronized (lock) {
+            Multimap<LandmarkType<?>, BlockPos> bucket = unownedByChunk.get(chunkPos.toLong());
+            return bucket == null ? HashMultimap.create() : HashMultimap.create(bucket);
+        }
+    }
+
+    /**
+     * The landmarks visible to an exploration - the unowned landmarks in its explored chunks, plus those owned by its shared players.
+     * Only landmark-bearing chunks are checked, so this doesn't scale with the number of landmarks.
+     */
+    protected Multimap<LandmarkType<?>, BlockPos> visibleKeySet(SurveyorExploration exploration) {
+        Multimap<LandmarkType<?>, BlockPos> outMap = HashMultimap.create();
+        synchronized (lock) {
+            for (Long2ObjectMap.Entry<Multimap<LandmarkType<?>, BlockPos>> entry : unownedByChunk.long2ObjectEntrySet()) {
+                if (exploration.exploredChunk(worldKey, new ChunkPos(entry.getLongKey()))) outMap.putAll(entry.getValue());
+            }
+            for (UUID player : exploration.sharedPlayers()) {
+                if (ownedByPlayer.containsKey(player)) outMap.putAll(ownedByPlayer.get(player));
+            }
+        }
+        return outMap;
     }
 
     public boolean contains(LandmarkType<?> type, BlockPos pos) {
@@ -42,31 +152,72 @@ public class WorldLandmarks {
         return (Landmark<T>) landmarks.get(type).get(pos);
     }
 
+    /**
+     * A read-only live view of every landmark, safe to iterate from any thread without copying.
+     * Iteration is weakly consistent, but landmarks are replaced rather than modified, so each landmark seen is whole.
+     */
+    public Map<LandmarkType<?>, Map<BlockPos, Landmark<?>>> view() {
+        return view;
+    }
+
+    /**
+     * Visits each landmark the exploration can see, filtering while iterating instead of copying.
+     */
+    public void forEach(@Nullable SurveyorExploration exploration, Consumer<Landmark<?>> visitor) {
+        if (exploration == null || Surveyor.CONFIG.shareAllLandmarks) {
+            view().values().forEach(map -> map.values().forEach(visitor));
+        } else {
+            Map<LandmarkType<?>, Map<BlockPos, Landmark<?>>> view = view();
+            visibleKeySet(exploration).forEach((type, pos) -> {
+                Landmark<?> landmark = view.getOrDefault(type, Map.of()).get(pos);
+                if (landmark != null) visitor.accept(landmark);
+            });
+        }
+    }
+
     @SuppressWarnings("unchecked")
     public <T extends Landmark<T>> Map<BlockPos, T> asMap(LandmarkType<T> type, SurveyorExploration exploration) {
         Map<BlockPos, T> outMap = new HashMap<>();
-        if (landmarks.containsKey(type)) landmarks.get(type).forEach((pos, landmark) -> {
-            if (exploration == null || exploration.exploredLandmark(worldKey, landmark)) outMap.put(pos, (T) landmark);
-        });
+        if (!landmarks.containsKey(type)) return outMap;
+        if (exploration == null || Surveyor.CONFIG.shareAllLandmarks) {
+            landmarks.get(type).forEach((pos, landmark) -> outMap.put(pos, (T) landmark));
+        } else {
+            Map<BlockPos, Landmark<?>> typeLandmarks = landmarks.get(type);
+            for (BlockPos pos : visibleKeySet(exploration).get(type)) {
+                Landmark<?> landmark = typeLandmarks.get(pos);
+                if (landmark != null) outMap.put(pos, (T) landmark);
+            }
+        }
         return outMap;
     }
 
     public Map<LandmarkType<?>, Map<BlockPos, Landmark<?>>> asMap(SurveyorExploration exploration) {
         Map<LandmarkType<?>, Map<BlockPos, Landmark<?>>> outmap = new HashMap<>();
-        landmarks.forEach((type, map) -> map.forEach((pos, landmark) -> {
-            if (exploration == null || exploration.exploredLandmark(worldKey, landmark)) outmap.computeIfAbsent(type, t -> new HashMap<>()).put(pos, landmark);
-        }));
+        forEach(exploration, landmark -> outmap.computeIfAbsent(landmark.type(), t -> new HashMap<>()).put(landmark.pos(), landmark));
         return outmap;
     }
 
     public Multimap<LandmarkType<?>, BlockPos> keySet(SurveyorExploration exploration) {
+        if (exploration != null && !Surveyor.CONFIG.shareAllLandmarks) return visibleKeySet(exploration);
         Multimap<LandmarkType<?>, BlockPos> outMap = HashMultimap.create();
-        landmarks.forEach((type, map) -> map.forEach((pos, landmark) -> {
-            if (exploration == null || exploration.exploredLandmark(worldKey, landmark)) outMap.put(type, pos);
-        }));
+        landmarks.forEach((type, map) -> outMap.putAll(type, map.keySet()));
         return outMap;
     }
 
+    public RegionHashTree getHashTree() {
+        return hashTree;
+    }
+
+    /**
+     * The hash tree of the landmarks an exploration can see, built straight from the shared view.
+     */
+    public RegionHashTree getHashTree(SurveyorExploration exploration) {
+        if (exploration == null || Surveyor.CONFIG.shareAllLandmarks) return hashTree;
+        RegionHashTree tree = new RegionHashTree();
+        forEach(exploration, tree::toggle);
+        return tree;
+    }
+
     public void handleChanged(World world, Multimap<LandmarkType<?>, BlockPos> changed, boolean local, @Nullable ServerPlayerEntity sender) {
         Map<LandmarkType<?>, Map<BlockPos, Landmark<?>>> landmarksAddedChanged = new HashMap<>();
         Multimap<LandmarkType<?>, BlockPos> landmarksRemoved = HashMultimap.create();
@@ -79,15 +230,118 @@ public class WorldLandmarks {
         });
         if (!landmarksRemoved.isEmpty()) SurveyorEvents.Invoke.landmarksRemoved(world, landmarksRemoved);
         if (!landmarksAddedChanged.isEmpty()) SurveyorEvents.Invoke.landmarksAdded(world, MapUtil.keyMultiMap(landmarksAddedChanged));
-        if (!local) {
-            if (!landmarksRemoved.isEmpty()) new SyncLandmarksRemovedPacket(landmarksRemoved).send(sender, world);
-            if (!landmarksAddedChanged.isEmpty()) new SyncLandmarksAddedPacket(landmarksAddedChanged).send(sender, world);
+        if (!local && !changed.isEmpty()) {
+            synchronized (pendingSync) {
+                pendingSync.computeIfAbsent(sender, s -> HashMultimap.create()).putAll(changed);
+            }
+        }
+    }
+
+    /**
+     * Queues any unowned landmarks in a newly explored chunk to be sent to the player, as they were filtered out of earlier syncs.
+     */
+    public void queueChunkSync(ServerPlayerEntity player, ChunkPos chunkPos) {
+        Multimap<LandmarkType<?>, BlockPos> inChunk = unownedKeySet(chunkPos);
+        if (inChunk.isEmpty()) return;
+        synchronized (pendingSync) {
+            pendingTargetedSync.computeIfAbsent(player, p -> HashMultimap.create()).putAll(inChunk);
+        }
+    }
+
+    /**
+     * Removes changes the player can't see. Changes to landmarks beyond {@link folk.sisby.surveyor.SurveyorConfig#landmarkSyncDistance} are deferred until the player comes within range.
+     */
+    protected Multimap<LandmarkType<?>, BlockPos> limitSync(ServerPlayerEntity player, Multimap<LandmarkType<?>, BlockPos> changed) {
+        SurveyorExploration exploration = SurveyorExploration.of(player);
+        int distance = Surveyor.CONFIG.landmarkSyncDistance;
+        changed.entries().removeIf(e -> {
+            if (!contains(e.getKey(), e.getValue())) return false;
+            if (!exploration.exploredLandmark(worldKey, get(e.getKey(), e.getValue()))) return true;
+            if (distance > 0 && !player.getBlockPos().isWithinDistance(e.getValue(), distance)) {
+                deferredSync.computeIfAbsent(player, p -> HashMultimap.create()).put(e.getKey(), e.getValue());
+                return true;
+            }
+            return false;
+        });
+        return changed;
+    }
+
+    /**
+     * Takes the player's deferred changes that are now within range.
+     */
+    protected void takeDeferred(ServerPlayerEntity player, Multimap<LandmarkType<?>, BlockPos> changed) {
+        Multimap<LandmarkType<?>, BlockPos> deferred = deferredSync.get(player);
+        if (deferred == null) return;
+        int distance = Surveyor.CONFIG.landmarkSyncDistance;
+        deferred.entries().removeIf(e -> {
+            if (distance > 0 && !player.getBlockPos().isWithinDistance(e.getValue(), distance)) return false;
+            changed.put(e.getKey(), e.getValue());
+            return true;
+        });
+        if (deferred.isEmpty()) deferredSync.remove(player);
+    }
+
+    /**
+     * Sends all changes queued by {@link #handleChanged} since the last flush - called once per world tick.
+     * On the server, each player only receives changes they can see (removals are always sent), and never their own changes.
+     * Changes deferred for distance are checked every {@link #DEFERRED_INTERVAL} ticks; players who leave the world drop theirs, and catch up through the join handshake instead.
+     * Players receiving identical changes share one encoded packet.
+     */
+    public void flushSync(World world) {
+        Map<ServerPlayerEntity, Multimap<LandmarkType<?>, BlockPos>> pending;
+        Map<ServerPlayerEntity, Multimap<LandmarkType<?>, BlockPos>> targeted;
+        boolean checkDeferred = world instanceof ServerWorld && !deferredSync.isEmpty() && world.getTime() % DEFERRED_INTERVAL == 0;
+        synchronized (pendingSync) {
+            if (pendingSync.isEmpty() && pendingTargetedSync.isEmpty() && !checkDeferred) return;
+            pending = new HashMap<>(pendingSync);
+            targeted = new HashMap<>(pendingTargetedSync);
+            pendingSync.clear();
+            pendingTargetedSync.clear();
+        }
+        if (world instanceof ServerWorld serverWorld) {
+            if (checkDeferred) deferredSync.keySet().retainAll(serverWorld.getPlayers());
+            Map<ServerPlayerEntity, Multimap<LandmarkType<?>, BlockPos>> playerChanged = new HashMap<>();
+            for (ServerPlayerEntity player : serverWorld.getPlayers()) {
+                Multimap<LandmarkType<?>, BlockPos> changed = HashMultimap.create();
+                pending.forEach((sender, senderChanged) -> {
+                    if (sender != player) changed.putAll(senderChanged);
+                });
+                limitSync(player, changed);
+                if (targeted.containsKey(player)) changed.putAll(targeted.get(player));
+                if (checkDeferred) takeDeferred(player, changed);
+                if (!changed.isEmpty()) playerChanged.put(player, changed);
+            }
+            MapUtil.groupByValue(playerChanged).forEach((changed, players) -> sync(changed, packet -> packet.send(players)));
+        } else {
+            Multimap<LandmarkType<?>, BlockPos> allChanged = HashMultimap.create();
+            pending.values().forEach(allChanged::putAll);
+            sync(allChanged, SyncPacket::send);
         }
     }
 
+    protected void sync(Multimap<LandmarkType<?>, BlockPos> changed, Consumer<SyncPacket> sender) {
+        Map<LandmarkType<?>, Map<BlockPos, Landmark<?>>> landmarksAddedChanged = new HashMap<>();
+        Multimap<LandmarkType<?>, BlockPos> landmarksRemoved = HashMultimap.create();
+        changed.forEach((type, pos) -> {
+            if (contains(type, pos)) {
+                landmarksAddedChanged.computeIfAbsent(type, t -> new HashMap<>()).put(pos, get(type, pos));
+            } else {
+                landmarksRemoved.put(type, pos);
+            }
+        });
+        if (!landmarksRemoved.isEmpty()) sender.accept(new SyncLandmarksRemovedPacket(landmarksRemoved));
+        if (!landmarksAddedChanged.isEmpty()) sender.accept(new SyncLandmarksAddedPacket(landmarksAddedChanged));
+    }
+
     public Multimap<LandmarkType<?>, BlockPos> putForBatch(Multimap<LandmarkType<?>, BlockPos> changed, Landmark<?> landmark) {
-        landmarks.computeIfAbsent(landmark.type(), t -> new ConcurrentHashMap<>()).put(landmark.pos(), landmark);
-        dirty = true;
+        Landmark<?> old = landmarks.computeIfAbsent(landmark.type(), t -> new ConcurrentHashMap<>()).put(landmark.pos(), landmark);
+        if (old != null) {
+            hashTree.toggle(old);
+            unindex(old);
+        }
+        hashTree.toggle(landmark);
+        index(landmark);
+        markDirty(landmark.pos());
         changed.put(landmark.type(), landmark.pos());
         return changed;
     }
@@ -109,9 +363,11 @@ public class WorldLandmarks {
 
     public Multimap<LandmarkType<?>, BlockPos> removeForBatch(Multimap<LandmarkType<?>, BlockPos> changed, LandmarkType<?> type, BlockPos pos) {
         if (!landmarks.containsKey(type) || !landmarks.get(type).containsKey(pos)) return changed;
-        landmarks.get(type).remove(pos);
+        Landmark<?> old = landmarks.get(type).remove(pos);
+        unindex(old);
         if (landmarks.get(type).isEmpty()) landmarks.remove(type);
-        dirty = true;
+        hashTree.toggle(old);
+        markDirty(pos);
         changed.put(type, pos);
         return changed;
     }
@@ -147,29 +403,130 @@ public class WorldLandmarks {
         handleChanged(world, changed, false, null);
     }
 
+    protected void markDirty(BlockPos pos) {
+        synchronized (dirtyRegions) {
+            dirtyRegions.add(RegionHashTree.regionOf(pos));
+        }
+    }
+
+    /**
+     * Visits each landmark inside a box that the exploration can see, without copying the landmark maps.
+     * Only the regions overlapping the box are looked at, and the visitor runs after the index lock is released.
+     */
+    public void query(BlockBox box, @Nullable SurveyorExploration exploration, Consumer<Landmark<?>> visitor) {
+        int minRegionX = RegionSummary.chunkToRegion(box.getMinX() >> 4);
+        int minRegionZ = RegionSummary.chunkToRegion(box.getMinZ() >> 4);
+        int maxRegionX = RegionSummary.chunkToRegion(box.getMaxX() >> 4);
+        int maxRegionZ = RegionSummary.chunkToRegion(box.getMaxZ() >> 4);
+        List<Landmark<?>> found = new ArrayList<>();
+        synchronized (lock) {
+            for (int x = minRegionX; x <= maxRegionX; x++) {
+                for (int z = minRegionZ; z <= maxRegionZ; z++) {
+                    Multimap<LandmarkType<?>, BlockPos> regionKeys = byRegion.get(ChunkPos.toLong(x, z));
+                    if (regionKeys == null) continue;
+                    for (Map.Entry<LandmarkType<?>, BlockPos> entry : regionKeys.entries()) {
+                        if (!box.contains(entry.getValue())) continue;
+                        Map<BlockPos, Landmark<?>> typeLandmarks = landmarks.get(entry.getKey());
+                        Landmark<?> landmark = typeLandmarks == null ? null : typeLandmarks.get(entry.getValue());
+                        if (landmark != null) found.add(landmark);
+                    }
+                }
+            }
+        }
+        for (Landmark<?> landmark : found) {
+            if (exploration == null || exploration.exploredLandmark(worldKey, landmark)) visitor.accept(landmark);
+        }
+    }
+
+    /**
+     * The landmarks in one region, as stored in its shard file.
+     */
+    public Map<LandmarkType<?>, Map<BlockPos, Landmark<?>>> regionMap(ChunkPos regionPos) {
+        Multimap<LandmarkType<?>, BlockPos> keys;
+        synchronized (lock) {
+            Multimap<LandmarkType<?>, BlockPos> regionKeys = byRegion.get(regionPos.toLong());
+            keys = regionKeys == null ? HashMultimap.create() : HashMultimap.create(regionKeys);
+        }
+        Map<LandmarkType<?>, Map<BlockPos, Landmark<?>>> outMap = new HashMap<>();
+        keys.forEach((type, pos) -> {
+            if (contains(type, pos)) outMap.computeIfAbsent(type, t -> new HashMap<>()).put(pos, get(type, pos));
+        });
+        return outMap;
+    }
+
+    /**
+     * Writes only the regions whose landmarks changed since the last save, deleting the files of regions left empty.
+     */
     public int save(World world, File folder) {
-        if (dirty) {
-            File landmarksFile = new File(folder, "landmarks.dat");
+        long[] regions;
+        synchronized (dirtyRegions) {
+            regions = dirtyRegions.toLongArray();
+            dirtyRegions.clear();
+        }
+        int saved = 0;
+        for (long region : regions) {
+            ChunkPos regionPos = new ChunkPos(region);
+            File shardFile = new File(folder, "l.%d.%d.dat".formatted(regionPos.x, regionPos.z));
+            Map<LandmarkType<?>, Map<BlockPos, Landmark<?>>> regionLandmarks = regionMap(regionPos);
             try {
-                NbtIo.writeCompressed(Landmarks.writeNbt(landmarks, new NbtCompound()), landmarksFile);
+                if (regionLandmarks.isEmpty()) {
+                    Files.deleteIfExists(shardFile.toPath());
+                } else {
+                    NbtIo.writeCompressed(Landmarks.writeNbt(regionLandmarks, new NbtCompound()), shardFile);
+                }
+                saved++;
             } catch (IOException e) {
-                Surveyor.LOGGER.error("[Surveyor] Error writing landmarks file for {}.", world.getRegistryKey().getValue(), e);
+                Surveyor.LOGGER.error("[Surveyor] Error writing landmarks file {} for {}.", shardFile.getName(), world.getRegistryKey().getValue(), e);
+                markDirty(regionPos.getStartPos());
             }
-            return landmarks.size();
         }
-        return 0;
+        if (migratingLegacy && saved == regions.length) {
+            migratingLegacy = false;
+            if (!new File(folder, "landmarks.dat").delete()) Surveyor.LOGGER.warn("[Surveyor] Couldn't remove migrated landmarks file for {}.", world.getRegistryKey().getValue());
+        }
+        return saved;
     }
 
     public static WorldLandmarks load(World world, File folder) {
-        NbtCompound landmarkNbt = new NbtCompound();
-        File landmarksFile = new File(folder, "landmarks.dat");
-        if (landmarksFile.exists()) {
+        Map<LandmarkType<?>, Map<BlockPos, Landmark<?>>> landmarks = new HashMap<>();
+        boolean legacy = false;
+        File legacyFile = new File(folder, "landmarks.dat");
+        if (legacyFile.exists()) {
             try {
-                landmarkNbt = NbtIo.readCompressed(landmarksFile);
+                Landmarks.fromNbt(NbtIo.readCompressed(legacyFile)).forEach((type, map) -> landmarks.computeIfAbsent(type, t -> new HashMap<>()).putAll(map));
+                legacy = true;
             } catch (IOException e) {
                 Surveyor.LOGGER.error("[Surveyor] Error loading landmarks file for {}.", world.getRegistryKey().getValue(), e);
             }
         }
-        return new WorldLandmarks(world.getRegistryKey(), Landmarks.fromNbt(landmarkNbt));
+        File[] shardFiles = folder.listFiles((file, name) -> {
+            String[] split = name.split("\\.");
+            if (split.length == 4 && split[0].equals("l") && split[3].equals("dat")) {
+                try {
+                    Integer.parseInt(split[1]);
+                    Integer.parseInt(split[2]);
+                    return true;
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            return false;
+        });
+        if (shardFiles != null) {
+            for (File shardFile : shardFiles) {
+                try {
+                    Landmarks.fromNbt(NbtIo.readCompressed(shardFile)).forEach((type, map) -> landmarks.computeIfAbsent(type, t -> new HashMap<>()).putAll(map));
+                } catch (IOException e) {
+                    Surveyor.LOGGER.error("[Surveyor] Error loading landmarks file {} for {}.", shardFile.getName(), world.getRegistryKey().getValue(), e);
+                }
+            }
+        }
+        WorldLandmarks worldLandmarks = new WorldLandmarks(world.getRegistryKey(), landmarks);
+        if (legacy) { // Migrate to region files on next save
+            worldLandmarks.migratingLegacy = true;
+            synchronized (worldLandmarks.dirtyRegions) {
+                worldLandmarks.dirtyRegions.addAll(worldLandmarks.byRegion.keySet());
+            }
+        }
+        return worldLandmarks;
     }
 }
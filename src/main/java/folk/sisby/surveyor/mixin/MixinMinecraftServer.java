@@ -1,5 +1,7 @@
 package folk.sisby.surveyor.mixin;
 
+import folk.sisby.surveyor.ExplorationGroups;
+import folk.sisby.surveyor.ExplorationStore;
 import folk.sisby.surveyor.Surveyor;
 import folk.sisby.surveyor.WorldSummary;
 import net.minecraft.server.MinecraftServer;
@@ -17,5 +19,7 @@ public class MixinMinecraftServer {
         for (ServerWorld world : self.getWorlds()) {
             if (!world.savingDisabled || force) WorldSummary.of(world).save(world, Surveyor.getSavePath(world), suppressLogs);
         }
+        ExplorationStore.saveAll(self);
+        ExplorationGroups.save(self);
     }
 }
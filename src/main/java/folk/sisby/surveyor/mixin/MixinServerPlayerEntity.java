@@ -33,14 +33,11 @@ public class MixinServerPlayerEntity implements SurveyorPlayer {
         return surveyor$viewDistance == -1 ? self.getServer().getPlayerManager().getViewDistance() : surveyor$viewDistance;
     }
 
-    @Inject(at = @At("TAIL"), method = "writeCustomDataToNbt")
-    public void writeSurveyorData(NbtCompound nbt, CallbackInfo ci) {
-        nbt.put(ServerPlayerExploration.KEY_DATA, surveyor$exploration.write(new NbtCompound()));
-    }
-
     @Inject(at = @At("TAIL"), method = "readCustomDataFromNbt")
-    public void readSurveyorData(NbtCompound nbt, CallbackInfo ci) {
+    public void migrateSurveyorData(NbtCompound nbt, CallbackInfo ci) {
+        if (!nbt.contains(ServerPlayerExploration.KEY_DATA)) return;
         surveyor$exploration.read(nbt.getCompound(ServerPlayerExploration.KEY_DATA));
+        surveyor$exploration.markDirty();
     }
 
     @Inject(at = @At("TAIL"), method = "copyFrom")
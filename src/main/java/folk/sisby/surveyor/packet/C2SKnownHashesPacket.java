@@ -0,0 +1,29 @@
+package folk.sisby.surveyor.packet;
+
+import folk.sisby.surveyor.Surveyor;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+
+public record C2SKnownHashesPacket(long terrain, long structures, long landmarks) implements C2SPacket {
+    public static final Identifier ID = new Identifier(Surveyor.ID, "c2s_known_hashes");
+
+    public static C2SKnownHashesPacket read(PacketByteBuf buf) {
+        return new C2SKnownHashesPacket(
+            buf.readLong(),
+            buf.readLong(),
+            buf.readLong()
+        );
+    }
+
+    @Override
+    public void writeBuf(PacketByteBuf buf) {
+        buf.writeLong(terrain);
+        buf.writeLong(structures);
+        buf.writeLong(landmarks);
+    }
+
+    @Override
+    public Identifier getId() {
+        return ID;
+    }
+}
@@ -1,29 +1,39 @@
 package folk.sisby.surveyor.packet;
 
-import com.google.common.collect.Multimap;
 import folk.sisby.surveyor.Surveyor;
 import folk.sisby.surveyor.landmark.LandmarkType;
 import folk.sisby.surveyor.landmark.Landmarks;
-import folk.sisby.surveyor.util.MapUtil;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 
-public record C2SKnownLandmarksPacket(Multimap<LandmarkType<?>, BlockPos> landmarks) implements C2SPacket {
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The landmarks a client knows in regions whose hashes differ from the server's, with each landmark's content hash - so edited landmarks are resent too.
+ */
+public record C2SKnownLandmarksPacket(Set<ChunkPos> regions, Map<LandmarkType<?>, Map<BlockPos, Long>> landmarks) implements C2SPacket {
     public static final Identifier ID = new Identifier(Surveyor.ID, "c2s_known_landmarks");
 
     public static C2SKnownLandmarksPacket read(PacketByteBuf buf) {
-        return new C2SKnownLandmarksPacket(MapUtil.asMultiMap(buf.readMap(
-            b -> Landmarks.getType(b.readIdentifier()),
-            b -> b.readList(PacketByteBuf::readBlockPos)
-        )));
+        return new C2SKnownLandmarksPacket(
+            buf.readCollection(HashSet::new, PacketByteBuf::readChunkPos),
+            buf.readMap(
+                b -> Landmarks.getType(b.readIdentifier()),
+                b -> b.readMap(PacketByteBuf::readBlockPos, PacketByteBuf::readLong)
+            )
+        );
     }
 
     @Override
     public void writeBuf(PacketByteBuf buf) {
-        buf.writeMap(landmarks.asMap(),
+        buf.writeCollection(regions, PacketByteBuf::writeChunkPos);
+        buf.writeMap(landmarks,
             (b, k) -> b.writeIdentifier(k.id()),
-            (b, c) -> b.writeCollection(c, PacketByteBuf::writeBlockPos)
+            (b, m) -> b.writeMap(m, PacketByteBuf::writeBlockPos, PacketByteBuf::writeLong)
         );
     }
 
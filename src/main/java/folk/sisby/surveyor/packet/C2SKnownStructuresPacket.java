@@ -12,18 +12,21 @@ import net.minecraft.world.gen.structure.Structure;
 
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Set;
 
-public record C2SKnownStructuresPacket(Multimap<RegistryKey<Structure>, ChunkPos> structureKeys) implements C2SPacket {
+public record C2SKnownStructuresPacket(Set<ChunkPos> regions, Multimap<RegistryKey<Structure>, ChunkPos> structureKeys) implements C2SPacket {
     public static final Identifier ID = new Identifier(Surveyor.ID, "c2s_known_structures");
 
     public static C2SKnownStructuresPacket read(PacketByteBuf buf) {
         return new C2SKnownStructuresPacket(
+            buf.readCollection(HashSet::new, PacketByteBuf::readChunkPos),
             MapUtil.asMultiMap(buf.readMap(b -> b.readRegistryKey(RegistryKeys.STRUCTURE), b -> new HashSet<>(Arrays.stream(b.readLongArray()).mapToObj(ChunkPos::new).toList())))
         );
     }
 
     @Override
     public void writeBuf(PacketByteBuf buf) {
+        buf.writeCollection(regions, PacketByteBuf::writeChunkPos);
         buf.writeMap(structureKeys.asMap(), PacketByteBuf::writeRegistryKey, (b, starts) -> b.writeLongArray(starts.stream().mapToLong(ChunkPos::toLong).toArray()));
     }
 
@@ -0,0 +1,39 @@
+package folk.sisby.surveyor.packet;
+
+import folk.sisby.surveyor.Surveyor;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+
+/**
+ * Region-level hashes for each tree whose root didn't match the client's.
+ * An empty map means the client doesn't need to descend into that tree.
+ */
+public record S2CRegionHashesPacket(Long2LongMap terrain, Long2LongMap structures, Long2LongMap landmarks) implements S2CPacket {
+    public static final Identifier ID = new Identifier(Surveyor.ID, "s2c_region_hashes");
+
+    private static Long2LongMap readHashes(PacketByteBuf buf) {
+        return buf.readMap(Long2LongOpenHashMap::new, PacketByteBuf::readLong, PacketByteBuf::readLong);
+    }
+
+    public static S2CRegionHashesPacket read(PacketByteBuf buf) {
+        return new S2CRegionHashesPacket(
+            readHashes(buf),
+            readHashes(buf),
+            readHashes(buf)
+        );
+    }
+
+    @Override
+    public void writeBuf(PacketByteBuf buf) {
+        buf.writeMap(terrain, PacketByteBuf::writeLong, PacketByteBuf::writeLong);
+        buf.writeMap(structures, PacketByteBuf::writeLong, PacketByteBuf::writeLong);
+        buf.writeMap(landmarks, PacketByteBuf::writeLong, PacketByteBuf::writeLong);
+    }
+
+    @Override
+    public Identifier getId() {
+        return ID;
+    }
+}
@@ -1,22 +1,29 @@
 package folk.sisby.surveyor.packet;
 
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 import folk.sisby.surveyor.Surveyor;
 import folk.sisby.surveyor.structure.StructureStartSummary;
 import folk.sisby.surveyor.structure.WorldStructureSummary;
+import folk.sisby.surveyor.terrain.RegionSummary;
 import folk.sisby.surveyor.util.MapUtil;
+import folk.sisby.surveyor.util.PaletteUtil;
+import io.netty.buffer.Unpooled;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.registry.RegistryKey;
 import net.minecraft.registry.RegistryKeys;
 import net.minecraft.registry.tag.TagKey;
 import net.minecraft.util.Identifier;
+import net.minecraft.util.collection.Int2ObjectBiMap;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.gen.structure.Structure;
 import net.minecraft.world.gen.structure.StructureType;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.function.ToIntFunction;
 
 public record S2CStructuresAddedPacket(Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> structures, Map<RegistryKey<Structure>, RegistryKey<StructureType<?>>> structureTypes, Multimap<RegistryKey<Structure>, TagKey<Structure>> structureTags) implements S2CPacket {
     public static final Identifier ID = new Identifier(Surveyor.ID, "s2c_structures_added");
@@ -25,43 +32,67 @@ public record S2CStructuresAddedPacket(Map<RegistryKey<Structure>, Map<ChunkPos,
         return new S2CStructuresAddedPacket(Map.of(key, Map.of(pos, summary)), Map.of(key, structureType), MapUtil.asMultiMap(Map.of(key, structureTags)));
     }
 
+    public static S2CStructuresAddedPacket of(WorldStructureSummary summary, Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> structures) {
+        Map<RegistryKey<Structure>, RegistryKey<StructureType<?>>> structureTypes = new HashMap<>();
+        Multimap<RegistryKey<Structure>, TagKey<Structure>> structureTags = HashMultimap.create();
+        for (RegistryKey<Structure> key : structures.keySet()) {
+            structureTypes.put(key, summary.getType(key));
+            structureTags.putAll(key, summary.getTags(key));
+        }
+        return new S2CStructuresAddedPacket(structures, structureTypes, structureTags);
+    }
+
     public static S2CStructuresAddedPacket read(PacketByteBuf buf) {
+        List<Identifier> ids = buf.readList(PacketByteBuf::readIdentifier);
+        Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> structures = new HashMap<>();
+        int structureCount = buf.readVarInt();
+        for (int i = 0; i < structureCount; i++) {
+            RegistryKey<Structure> key = RegistryKey.of(RegistryKeys.STRUCTURE, ids.get(buf.readVarInt()));
+            Map<ChunkPos, StructureStartSummary> starts = new HashMap<>();
+            int startCount = buf.readVarInt();
+            for (int j = 0; j < startCount; j++) {
+                ChunkPos pos = buf.readChunkPos();
+                starts.put(pos, StructureStartSummary.readBuf(buf, pos, ids::get));
+            }
+            structures.put(key, starts);
+        }
         return new S2CStructuresAddedPacket(
+            structures,
             buf.readMap(
-                b -> b.readRegistryKey(RegistryKeys.STRUCTURE),
-                b -> b.readMap(
-                    PacketByteBuf::readChunkPos,
-                    b2 -> new StructureStartSummary(b2.readList(b3 -> WorldStructureSummary.readStructurePieceNbt(Objects.requireNonNull(b3.readNbt()))))
-                )
-            ),
-            buf.readMap(
-                b -> b.readRegistryKey(RegistryKeys.STRUCTURE),
-                b -> b.readRegistryKey(RegistryKeys.STRUCTURE_TYPE)
+                b -> RegistryKey.of(RegistryKeys.STRUCTURE, ids.get(b.readVarInt())),
+                b -> RegistryKey.of(RegistryKeys.STRUCTURE_TYPE, ids.get(b.readVarInt()))
             ),
             MapUtil.asMultiMap(buf.readMap(
-                b -> b.readRegistryKey(RegistryKeys.STRUCTURE),
-                b -> b.readList(b2 -> TagKey.of(RegistryKeys.STRUCTURE, b2.readIdentifier()))
+                b -> RegistryKey.of(RegistryKeys.STRUCTURE, ids.get(b.readVarInt())),
+                b -> b.readList(b2 -> TagKey.of(RegistryKeys.STRUCTURE, ids.get(b2.readVarInt())))
             ))
         );
     }
 
     @Override
     public void writeBuf(PacketByteBuf buf) {
-        buf.writeMap(structures,
-            PacketByteBuf::writeRegistryKey,
-            (b, posMap) -> b.writeMap(posMap,
-                PacketByteBuf::writeChunkPos,
-                (b2, summary) -> b2.writeCollection(summary.getChildren(), (b3, piece) -> b3.writeNbt(piece.toNbt()))
-            )
-        );
-        buf.writeMap(structureTypes,
-            PacketByteBuf::writeRegistryKey,
-            PacketByteBuf::writeRegistryKey
+        Int2ObjectBiMap<Identifier> palette = Int2ObjectBiMap.create(16);
+        ToIntFunction<Identifier> ids = id -> PaletteUtil.idOrAdd(palette, id);
+        PacketByteBuf body = new PacketByteBuf(Unpooled.buffer());
+        body.writeVarInt(structures.size());
+        structures.forEach((key, starts) -> {
+            body.writeVarInt(ids.applyAsInt(key.getValue()));
+            body.writeVarInt(starts.size());
+            starts.forEach((pos, summary) -> {
+                body.writeChunkPos(pos);
+                summary.writeBuf(body, pos, ids);
+            });
+        });
+        body.writeMap(structureTypes,
+            (b, key) -> b.writeVarInt(ids.applyAsInt(key.getValue())),
+            (b, type) -> b.writeVarInt(ids.applyAsInt(type.getValue()))
         );
-        buf.writeMap(structureTags.asMap(),
-            PacketByteBuf::writeRegistryKey,
-            (b, c) -> b.writeCollection(c, (b2, t) -> b2.writeIdentifier(t.id()))
+        body.writeMap(structureTags.asMap(),
+            (b, key) -> b.writeVarInt(ids.applyAsInt(key.getValue())),
+            (b, c) -> b.writeCollection(c, (b2, t) -> b2.writeVarInt(ids.applyAsInt(t.id())))
         );
+        buf.writeCollection(RegionSummary.mapPalette(palette, id -> id), PacketByteBuf::writeIdentifier);
+        buf.writeBytes(body);
     }
 
     @Override
@@ -20,11 +20,10 @@ public record S2CUpdateRegionPacket(ChunkPos regionPos, RegionSummary summary, B
 
     public static S2CUpdateRegionPacket handle(PacketByteBuf buf, DynamicRegistryManager manager, WorldSummary summary) {
         ChunkPos regionPos = buf.readChunkPos();
-        RegionSummary region = summary.terrain().getRegion(regionPos);
-        BitSet chunks = region.readBuf(manager, buf);
+        BitSet chunks = summary.terrain().readBuf(manager, regionPos, buf);
         return new S2CUpdateRegionPacket(
             regionPos,
-            region,
+            summary.terrain().getRegion(regionPos),
             chunks
         );
     }
@@ -4,12 +4,11 @@ import folk.sisby.surveyor.Surveyor;
 import folk.sisby.surveyor.landmark.Landmark;
 import folk.sisby.surveyor.landmark.LandmarkType;
 import folk.sisby.surveyor.landmark.Landmarks;
-import net.minecraft.nbt.NbtCompound;
-import net.minecraft.nbt.NbtOps;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
 
+import java.util.HashMap;
 import java.util.Map;
 
 public record SyncLandmarksAddedPacket(Map<LandmarkType<?>, Map<BlockPos, Landmark<?>>> landmarks) implements SyncPacket {
@@ -20,18 +19,32 @@ public record SyncLandmarksAddedPacket(Map<LandmarkType<?>, Map<BlockPos, Landma
     }
 
     public static SyncLandmarksAddedPacket read(PacketByteBuf buf) {
-        return new SyncLandmarksAddedPacket(buf.readMap(
-            b -> Landmarks.getType(b.readIdentifier()),
-            b -> b.readMap(PacketByteBuf::readBlockPos, b2 -> Landmarks.CODEC.decode(NbtOps.INSTANCE, b2.readNbt()).getOrThrow(false, Surveyor.LOGGER::error).getFirst().values().stream().findFirst().orElseThrow().values().stream().findFirst().orElseThrow())
-        ));
+        Map<LandmarkType<?>, Map<BlockPos, Landmark<?>>> landmarks = new HashMap<>();
+        int typeCount = buf.readVarInt();
+        for (int i = 0; i < typeCount; i++) {
+            LandmarkType<?> type = Landmarks.getType(buf.readIdentifier());
+            int count = buf.readVarInt();
+            Map<BlockPos, Landmark<?>> map = new HashMap<>(count);
+            for (int j = 0; j < count; j++) {
+                BlockPos pos = buf.readBlockPos();
+                map.put(pos, type.readBuf(buf, pos));
+            }
+            landmarks.put(type, map);
+        }
+        return new SyncLandmarksAddedPacket(landmarks);
     }
 
     @Override
     public void writeBuf(PacketByteBuf buf) {
-        buf.writeMap(landmarks,
-            (b, k) -> b.writeIdentifier(k.id()),
-            (b, m) -> b.writeMap(m, PacketByteBuf::writeBlockPos, (b2, landmark) -> b2.writeNbt((NbtCompound) Landmarks.CODEC.encodeStart(NbtOps.INSTANCE, Map.of(landmark.type(), Map.of(landmark.pos(), landmark))).getOrThrow(false, Surveyor.LOGGER::error)))
-        );
+        buf.writeVarInt(landmarks.size());
+        landmarks.forEach((type, map) -> {
+            buf.writeIdentifier(type.id());
+            buf.writeVarInt(map.size());
+            map.forEach((pos, landmark) -> {
+                buf.writeBlockPos(pos);
+                Landmarks.writeBuf(buf, landmark);
+            });
+        });
     }
 
     @Override
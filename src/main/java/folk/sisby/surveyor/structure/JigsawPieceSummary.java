@@ -2,12 +2,17 @@ package folk.sisby.surveyor.structure;
 
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import folk.sisby.surveyor.util.BufUtil;
 import net.minecraft.nbt.NbtCompound;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.RegistryKey;
 import net.minecraft.structure.JigsawJunction;
 import net.minecraft.structure.PoolStructurePiece;
 import net.minecraft.structure.StructureContext;
 import net.minecraft.structure.StructurePiece;
 import net.minecraft.structure.StructurePieceType;
+import net.minecraft.structure.StructureTemplateManager;
 import net.minecraft.structure.pool.FeaturePoolElement;
 import net.minecraft.structure.pool.ListPoolElement;
 import net.minecraft.structure.pool.SinglePoolElement;
@@ -22,6 +27,8 @@ import net.minecraft.util.math.BlockPos;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
 import java.util.stream.IntStream;
 
 public class JigsawPieceSummary extends StructurePieceSummary {
@@ -29,6 +36,7 @@ public class JigsawPieceSummary extends StructurePieceSummary {
     public static final String KEY_DELTA_Y = "deltaY";
     public static final String KEY_ROTATION = "rotation";
     public static final String KEY_JUNCTIONS = "junctions";
+    public static final RegistryKey<StructurePieceType> TYPE_KEY = Registries.STRUCTURE_PIECE.getKey(StructurePieceType.JIGSAW).orElseThrow();
     public static final BiMap<String, StructurePoolElementType<?>> TYPE_KEYS = HashBiMap.create(Map.of(
         "single", StructurePoolElementType.SINGLE_POOL_ELEMENT,
         "feature", StructurePoolElementType.FEATURE_POOL_ELEMENT
@@ -71,22 +79,31 @@ public class JigsawPieceSummary extends StructurePieceSummary {
         this.id = new Identifier(nbt.getString(idKey));
     }
 
-    public static List<StructurePieceSummary> tryFromElement(StructurePoolElement poolElement, PoolStructurePiece piece) {
+    /**
+     * The parts of a pool piece needed to summarise it, copied so it can be summarised off-thread while world generation keeps using the piece.
+     */
+    public record PoolPieceSnapshot(StructurePoolElement element, StructureTemplateManager templateManager, BlockPos pos, int groundLevelDelta, BlockRotation rotation, int chainLength, List<JigsawJunction> junctions) {
+        public static PoolPieceSnapshot of(PoolStructurePiece piece) {
+            return new PoolPieceSnapshot(piece.getPoolElement(), piece.structureTemplateManager, piece.getPos(), piece.getGroundLevelDelta(), piece.getRotation(), piece.getChainLength(), List.copyOf(piece.getJunctions()));
+        }
+    }
+
+    public static List<StructurePieceSummary> tryFromElement(StructurePoolElement poolElement, PoolPieceSnapshot piece) {
         if (poolElement instanceof ListPoolElement listElement) {
             List<StructurePieceSummary> allSummaries = new ArrayList<>();
             listElement.elements.forEach(e -> allSummaries.addAll(tryFromElement(e, piece)));
             return allSummaries;
         } else if (poolElement instanceof SinglePoolElement singleElement && singleElement.location.left().isPresent()) {
-            return List.of(new JigsawPieceSummary(piece.getPos(), piece.getGroundLevelDelta(), piece.getRotation(), StructurePoolElementType.SINGLE_POOL_ELEMENT, singleElement.location.left().orElseThrow(), piece.getChainLength(), poolElement.getBoundingBox(piece.structureTemplateManager, piece.getPos(), piece.getRotation()), piece.getJunctions()));
+            return List.of(new JigsawPieceSummary(piece.pos(), piece.groundLevelDelta(), piece.rotation(), StructurePoolElementType.SINGLE_POOL_ELEMENT, singleElement.location.left().orElseThrow(), piece.chainLength(), poolElement.getBoundingBox(piece.templateManager(), piece.pos(), piece.rotation()), piece.junctions()));
         } else if (poolElement instanceof FeaturePoolElement featureElement && featureElement.feature.getKey().isPresent()) {
-            return List.of(new JigsawPieceSummary(piece.getPos(), piece.getGroundLevelDelta(), piece.getRotation(), StructurePoolElementType.FEATURE_POOL_ELEMENT, featureElement.feature.getKey().orElseThrow().getValue(), piece.getChainLength(), poolElement.getBoundingBox(piece.structureTemplateManager, piece.getPos(), piece.getRotation()), piece.getJunctions()));
+            return List.of(new JigsawPieceSummary(piece.pos(), piece.groundLevelDelta(), piece.rotation(), StructurePoolElementType.FEATURE_POOL_ELEMENT, featureElement.feature.getKey().orElseThrow().getValue(), piece.chainLength(), poolElement.getBoundingBox(piece.templateManager(), piece.pos(), piece.rotation()), piece.junctions()));
         }
         return List.of();
     }
 
     public static List<StructurePieceSummary> tryFromPiece(StructurePiece piece) {
         if (piece instanceof PoolStructurePiece poolPiece) {
-            return tryFromElement(poolPiece.getPoolElement(), poolPiece);
+            return tryFromElement(poolPiece.getPoolElement(), PoolPieceSnapshot.of(poolPiece));
         }
         return List.of();
     }
@@ -104,6 +121,62 @@ public class JigsawPieceSummary extends StructurePieceSummary {
         }
     }
 
+    public static JigsawPieceSummary readBuf(PacketByteBuf buf, BlockPos origin, IntFunction<Identifier> ids, int chainLength, BlockBox boundingBox) {
+        int x = origin.getX() + BufUtil.readSignedVarInt(buf);
+        int y = BufUtil.readSignedVarInt(buf);
+        int z = origin.getZ() + BufUtil.readSignedVarInt(buf);
+        int deltaY = BufUtil.readSignedVarInt(buf);
+        BlockRotation rotation = BlockRotation.values()[buf.readByte()];
+        StructurePoolElementType<?> elementType = Registries.STRUCTURE_POOL_ELEMENT.get(ids.apply(buf.readVarInt()));
+        Identifier id = ids.apply(buf.readVarInt());
+        List<JigsawJunction> junctions = buf.readList(b -> {
+            int sourceX = origin.getX() + BufUtil.readSignedVarInt(b);
+            int sourceGroundY = BufUtil.readSignedVarInt(b);
+            int sourceZ = origin.getZ() + BufUtil.readSignedVarInt(b);
+            int junctionDeltaY = BufUtil.readSignedVarInt(b);
+            return new JigsawJunction(sourceX, sourceGroundY, sourceZ, junctionDeltaY, StructurePool.Projection.values()[b.readByte()]);
+        });
+        return new JigsawPieceSummary(new BlockPos(x, y, z), deltaY, rotation, elementType, id, chainLength, boundingBox, junctions);
+    }
+
+    /**
+     * Copies data written by {@link #writeBufData}, remapping only the element type and id palette indices.
+     */
+    public static void transcodeBuf(PacketByteBuf in, PacketByteBuf out, IntFunction<Identifier> fromIds, ToIntFunction<Identifier> toIds) {
+        for (int i = 0; i < 4; i++) { // Position and delta Y
+            out.writeVarInt(in.readVarInt());
+        }
+        out.writeByte(in.readByte());
+        out.writeVarInt(toIds.applyAsInt(fromIds.apply(in.readVarInt())));
+        out.writeVarInt(toIds.applyAsInt(fromIds.apply(in.readVarInt())));
+        int junctionCount = in.readVarInt();
+        out.writeVarInt(junctionCount);
+        for (int i = 0; i < junctionCount; i++) {
+            for (int j = 0; j < 4; j++) {
+                out.writeVarInt(in.readVarInt());
+            }
+            out.writeByte(in.readByte());
+        }
+    }
+
+    @Override
+    protected void writeBufData(PacketByteBuf buf, BlockPos origin, ToIntFunction<Identifier> ids) {
+        BufUtil.writeSignedVarInt(buf, pos.getX() - origin.getX());
+        BufUtil.writeSignedVarInt(buf, pos.getY());
+        BufUtil.writeSignedVarInt(buf, pos.getZ() - origin.getZ());
+        BufUtil.writeSignedVarInt(buf, deltaY);
+        buf.writeByte(rotation.ordinal());
+        buf.writeVarInt(ids.applyAsInt(Registries.STRUCTURE_POOL_ELEMENT.getId(elementType)));
+        buf.writeVarInt(ids.applyAsInt(id));
+        buf.writeCollection(junctions, (b, junction) -> {
+            BufUtil.writeSignedVarInt(b, junction.getSourceX() - origin.getX());
+            BufUtil.writeSignedVarInt(b, junction.getSourceGroundY());
+            BufUtil.writeSignedVarInt(b, junction.getSourceZ() - origin.getZ());
+            BufUtil.writeSignedVarInt(b, junction.getDeltaY());
+            b.writeByte(junction.getDestProjection().ordinal());
+        });
+    }
+
     public BlockPos getPos() {
         return pos;
     }
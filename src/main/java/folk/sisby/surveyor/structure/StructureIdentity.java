@@ -0,0 +1,41 @@
+package folk.sisby.surveyor.structure;
+
+import folk.sisby.surveyor.util.RegionHashTree;
+import net.minecraft.registry.DynamicRegistryManager;
+import net.minecraft.registry.Registry;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.registry.tag.TagKey;
+import net.minecraft.world.gen.structure.Structure;
+import net.minecraft.world.gen.structure.StructureType;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A structure's registry key (and its {@link RegionHashTree} hash), type key and tags - cached per structure instance, so chunk loads and placements don't repeat registry lookups.
+ * Tags can change on datapack reload, so the cache is cleared then and when the server stops.
+ */
+public record StructureIdentity(RegistryKey<Structure> key, long keyHash, RegistryKey<StructureType<?>> type, List<TagKey<Structure>> tags) {
+    private static final Map<Structure, StructureIdentity> CACHE = new ConcurrentHashMap<>();
+
+    public static StructureIdentity of(DynamicRegistryManager registryManager, Structure structure) {
+        StructureIdentity identity = CACHE.get(structure);
+        if (identity != null) return identity;
+        Registry<Structure> registry = registryManager.get(RegistryKeys.STRUCTURE);
+        RegistryKey<Structure> key = registry.getKey(structure).orElseThrow();
+        identity = new StructureIdentity(
+            key,
+            RegionHashTree.hashString(key.getValue().toString()),
+            registryManager.get(RegistryKeys.STRUCTURE_TYPE).getKey(structure.getType()).orElseThrow(),
+            registry.getEntry(structure).streamTags().toList()
+        );
+        CACHE.put(structure, identity);
+        return identity;
+    }
+
+    public static void clear() {
+        CACHE.clear();
+    }
+}
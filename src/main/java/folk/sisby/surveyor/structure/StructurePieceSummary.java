@@ -1,8 +1,10 @@
 package folk.sisby.surveyor.structure;
 
 import folk.sisby.surveyor.Surveyor;
+import folk.sisby.surveyor.util.BufUtil;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtOps;
+import net.minecraft.network.PacketByteBuf;
 import net.minecraft.registry.Registries;
 import net.minecraft.registry.RegistryKey;
 import net.minecraft.registry.RegistryKeys;
@@ -19,6 +21,9 @@ import net.minecraft.world.StructureWorldAccess;
 import net.minecraft.world.gen.StructureAccessor;
 import net.minecraft.world.gen.chunk.ChunkGenerator;
 
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
 public class StructurePieceSummary extends StructurePiece {
     protected final NbtCompound pieceNbt;
     protected final RegistryKey<StructurePieceType> typeKey;
@@ -29,6 +34,12 @@ public class StructurePieceSummary extends StructurePiece {
         this.pieceNbt = pieceNbt;
     }
 
+    protected StructurePieceSummary(RegistryKey<StructurePieceType> typeKey, int chainLength, BlockBox boundingBox, NbtCompound pieceNbt) {
+        super(Registries.STRUCTURE_PIECE.get(typeKey), chainLength, boundingBox); // Might set the type as null
+        this.typeKey = typeKey;
+        this.pieceNbt = pieceNbt;
+    }
+
     public StructurePieceSummary(NbtCompound nbt) {
         super(Registries.STRUCTURE_PIECE.get(new Identifier(nbt.getString("id"))), nbt); // Might set the type as null
         this.typeKey = RegistryKey.of(RegistryKeys.STRUCTURE_PIECE, new Identifier(nbt.getString("id")));
@@ -36,7 +47,8 @@ public class StructurePieceSummary extends StructurePiece {
     }
 
     public static StructurePieceSummary fromPiece(StructureContext context, StructurePiece piece, boolean withNbt) {
-        StructurePieceSummary summary = new StructurePieceSummary(piece.getType(), piece.getChainLength(), piece.getBoundingBox(), new NbtCompound());
+        BlockBox box = piece.getBoundingBox();
+        StructurePieceSummary summary = new StructurePieceSummary(piece.getType(), piece.getChainLength(), new BlockBox(box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(), box.getMaxY(), box.getMaxZ()), new NbtCompound());
         if (withNbt) {
             NbtCompound summaryNbt = summary.toNbt();
             NbtCompound pieceNbt = piece.toNbt(context);
@@ -61,6 +73,80 @@ public class StructurePieceSummary extends StructurePiece {
         return nbt;
     }
 
+    public static BlockBox readBox(PacketByteBuf buf, BlockPos origin) {
+        int minX = origin.getX() + BufUtil.readSignedVarInt(buf);
+        int minY = BufUtil.readSignedVarInt(buf);
+        int minZ = origin.getZ() + BufUtil.readSignedVarInt(buf);
+        int maxX = minX + buf.readVarInt();
+        int maxY = minY + buf.readVarInt();
+        int maxZ = minZ + buf.readVarInt();
+        return new BlockBox(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    public static StructurePieceSummary readData(PacketByteBuf buf, BlockPos origin, IntFunction<Identifier> ids, RegistryKey<StructurePieceType> typeKey, BlockBox boundingBox) {
+        int facing = buf.readByte();
+        int chainLength = buf.readVarInt();
+        StructurePieceSummary summary;
+        if (typeKey.equals(JigsawPieceSummary.TYPE_KEY)) {
+            summary = JigsawPieceSummary.readBuf(buf, origin, ids, chainLength, boundingBox);
+        } else {
+            NbtCompound pieceNbt = buf.readBoolean() ? buf.readNbt() : null;
+            summary = new StructurePieceSummary(typeKey, chainLength, boundingBox, pieceNbt == null ? new NbtCompound() : pieceNbt);
+        }
+        summary.setOrientation(facing == -1 ? null : Direction.fromHorizontal(facing));
+        return summary;
+    }
+
+    /**
+     * Writes the piece's type as a palette index and its bounding box relative to the structure start.
+     * This is all that's needed to index the piece without decoding the rest.
+     */
+    public final void writeBounds(PacketByteBuf buf, BlockPos origin, ToIntFunction<Identifier> ids) {
+        buf.writeVarInt(ids.applyAsInt(typeKey.getValue()));
+        writeBox(buf, origin, boundingBox);
+    }
+
+    public static void writeBox(PacketByteBuf buf, BlockPos origin, BlockBox box) {
+        BufUtil.writeSignedVarInt(buf, box.getMinX() - origin.getX());
+        BufUtil.writeSignedVarInt(buf, box.getMinY());
+        BufUtil.writeSignedVarInt(buf, box.getMinZ() - origin.getZ());
+        buf.writeVarInt(box.getMaxX() - box.getMinX());
+        buf.writeVarInt(box.getMaxY() - box.getMinY());
+        buf.writeVarInt(box.getMaxZ() - box.getMinZ());
+    }
+
+    /**
+     * Writes the rest of the piece, with positions relative to the structure start and identifiers as palette indices.
+     * Only opaque piece NBT is written as NBT.
+     */
+    public final void writeData(PacketByteBuf buf, BlockPos origin, ToIntFunction<Identifier> ids) {
+        Direction direction = this.getFacing();
+        buf.writeByte(direction == null ? -1 : direction.getHorizontal());
+        buf.writeVarInt(this.chainLength);
+        writeBufData(buf, origin, ids);
+    }
+
+    /**
+     * Copies the data of one piece written by {@link #writeData} into another buffer, moving its identifiers from one palette to another without decoding the piece.
+     * Positions are relative to the structure start, so they're copied as-is.
+     */
+    public static void transcodeData(PacketByteBuf in, PacketByteBuf out, Identifier type, IntFunction<Identifier> fromIds, ToIntFunction<Identifier> toIds) {
+        out.writeByte(in.readByte());
+        out.writeVarInt(in.readVarInt());
+        if (type.equals(JigsawPieceSummary.TYPE_KEY.getValue())) {
+            JigsawPieceSummary.transcodeBuf(in, out, fromIds, toIds);
+        } else {
+            boolean hasNbt = in.readBoolean();
+            out.writeBoolean(hasNbt);
+            if (hasNbt) out.writeNbt(in.readNbt());
+        }
+    }
+
+    protected void writeBufData(PacketByteBuf buf, BlockPos origin, ToIntFunction<Identifier> ids) {
+        buf.writeBoolean(!pieceNbt.isEmpty());
+        if (!pieceNbt.isEmpty()) buf.writeNbt(pieceNbt);
+    }
+
     @Override
     protected void writeNbt(StructureContext context, NbtCompound nbt) {
         if (!pieceNbt.isEmpty()) nbt.put("nbt", pieceNbt);
@@ -0,0 +1,95 @@
+package folk.sisby.surveyor.structure;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import folk.sisby.surveyor.packet.S2CStructuresAddedPacket;
+import folk.sisby.surveyor.terrain.RegionSummary;
+import folk.sisby.surveyor.util.PaletteUtil;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.registry.tag.TagKey;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.collection.Int2ObjectBiMap;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.gen.structure.Structure;
+import net.minecraft.world.gen.structure.StructureType;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * The save format of structure shard and segment files - the starts in one region, with identifiers interned into a table per file.
+ * Kept apart from the structure packets so the save format only changes deliberately; bump {@link #FORMAT} when it does.
+ */
+public class StructureShardCodec {
+    public static final String KEY_FORMAT = "format";
+    public static final String KEY_DATA = "structures";
+    public static final int FORMAT = 2; // 1: the structures packet layout, 2: own layout with types and tags inline
+    public static final int PACKET_FORMAT = 1;
+
+    public record Shard(Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> structures, Map<RegistryKey<Structure>, RegistryKey<StructureType<?>>> structureTypes, Multimap<RegistryKey<Structure>, TagKey<Structure>> structureTags) {
+    }
+
+    public static NbtCompound write(WorldStructureSummary summary, Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> structures) {
+        Int2ObjectBiMap<Identifier> palette = Int2ObjectBiMap.create(16);
+        ToIntFunction<Identifier> ids = id -> PaletteUtil.idOrAdd(palette, id);
+        PacketByteBuf body = new PacketByteBuf(Unpooled.buffer());
+        body.writeVarInt(structures.size());
+        structures.forEach((key, starts) -> {
+            body.writeVarInt(ids.applyAsInt(key.getValue()));
+            RegistryKey<StructureType<?>> type = summary.getType(key);
+            body.writeVarInt(ids.applyAsInt(type.getValue()));
+            body.writeCollection(summary.getTags(key), (b, tag) -> b.writeVarInt(ids.applyAsInt(tag.id())));
+            body.writeVarInt(starts.size());
+            starts.forEach((pos, start) -> {
+                body.writeChunkPos(pos);
+                start.writeBuf(body, pos, ids);
+            });
+        });
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+        buf.writeCollection(RegionSummary.mapPalette(palette, id -> id), PacketByteBuf::writeIdentifier);
+        buf.writeBytes(body);
+        NbtCompound nbt = new NbtCompound();
+        nbt.putInt(KEY_FORMAT, FORMAT);
+        nbt.putByteArray(KEY_DATA, ByteBufUtil.getBytes(buf));
+        return nbt;
+    }
+
+    /**
+     * @return the shard, or null if it was written in a format this version can't read.
+     */
+    public static @Nullable Shard read(NbtCompound nbt) {
+        int format = nbt.getInt(KEY_FORMAT);
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.wrappedBuffer(nbt.getByteArray(KEY_DATA)));
+        if (format == PACKET_FORMAT) {
+            S2CStructuresAddedPacket packet = S2CStructuresAddedPacket.read(buf);
+            return new Shard(packet.structures(), packet.structureTypes(), packet.structureTags());
+        }
+        if (format != FORMAT) return null;
+        List<Identifier> ids = buf.readList(PacketByteBuf::readIdentifier);
+        Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> structures = new HashMap<>();
+        Map<RegistryKey<Structure>, RegistryKey<StructureType<?>>> structureTypes = new HashMap<>();
+        Multimap<RegistryKey<Structure>, TagKey<Structure>> structureTags = HashMultimap.create();
+        int structureCount = buf.readVarInt();
+        for (int i = 0; i < structureCount; i++) {
+            RegistryKey<Structure> key = RegistryKey.of(RegistryKeys.STRUCTURE, ids.get(buf.readVarInt()));
+            structureTypes.put(key, RegistryKey.of(RegistryKeys.STRUCTURE_TYPE, ids.get(buf.readVarInt())));
+            structureTags.putAll(key, buf.readList(b -> TagKey.of(RegistryKeys.STRUCTURE, ids.get(b.readVarInt()))));
+            Map<ChunkPos, StructureStartSummary> starts = new HashMap<>();
+            int startCount = buf.readVarInt();
+            for (int j = 0; j < startCount; j++) {
+                ChunkPos pos = buf.readChunkPos();
+                starts.put(pos, StructureStartSummary.readBuf(buf, pos, ids::get));
+            }
+            structures.put(key, starts);
+        }
+        return new Shard(structures, structureTypes, structureTags);
+    }
+}
@@ -1,25 +1,138 @@
 package folk.sisby.surveyor.structure;
 
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
 
+/**
+ * A summarised structure start. When read from a packet or shard, only piece types and bounds are decoded;
+ * the rest of each piece is kept encoded and decoded on the first call to {@link #getChildren()}.
+ * Until then, writing the start copies the encoded pieces across, only remapping their palette indices.
+ */
 public class StructureStartSummary {
-    protected final Collection<StructurePieceSummary> children;
+    protected volatile Collection<StructurePieceSummary> children;
+    protected List<BlockBox> pieceBoxes;
     protected BlockBox boundingBox;
+    // Encoded piece data, until materialised
+    protected ChunkPos pos;
+    protected int[] pieceTypes;
+    protected byte[] pieceData;
+    protected IntFunction<Identifier> ids;
 
     public StructureStartSummary(Collection<StructurePieceSummary> children) {
         this.children = children;
     }
 
+    protected StructureStartSummary(ChunkPos pos, int[] pieceTypes, List<BlockBox> pieceBoxes, byte[] pieceData, IntFunction<Identifier> ids) {
+        this.pos = pos;
+        this.pieceTypes = pieceTypes;
+        this.pieceBoxes = pieceBoxes;
+        this.pieceData = pieceData;
+        this.ids = ids;
+    }
+
+    public static StructureStartSummary readBuf(PacketByteBuf buf, ChunkPos pos, IntFunction<Identifier> ids) {
+        BlockPos origin = pos.getStartPos();
+        int count = buf.readVarInt();
+        int[] pieceTypes = new int[count];
+        List<BlockBox> pieceBoxes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            pieceTypes[i] = buf.readVarInt();
+            pieceBoxes.add(StructurePieceSummary.readBox(buf, origin));
+        }
+        return new StructureStartSummary(pos, pieceTypes, pieceBoxes, buf.readByteArray(), ids);
+    }
+
+    /**
+     * Writes every piece's type and bounds, followed by the length-prefixed data of every piece - so readers can skip the data until it's needed.
+     */
+    public void writeBuf(PacketByteBuf buf, ChunkPos pos, ToIntFunction<Identifier> ids) {
+        BlockPos origin = pos.getStartPos();
+        Collection<StructurePieceSummary> pieces = children;
+        if (pieces == null) {
+            synchronized (this) {
+                pieces = children;
+                if (pieces == null) {
+                    writeEncoded(buf, origin, ids);
+                    return;
+                }
+            }
+        }
+        buf.writeVarInt(pieces.size());
+        PacketByteBuf data = new PacketByteBuf(Unpooled.buffer());
+        for (StructurePieceSummary piece : pieces) {
+            piece.writeBounds(buf, origin, ids);
+            piece.writeData(data, origin, ids);
+        }
+        buf.writeByteArray(ByteBufUtil.getBytes(data));
+    }
+
+    protected void writeEncoded(PacketByteBuf buf, BlockPos origin, ToIntFunction<Identifier> ids) {
+        buf.writeVarInt(pieceTypes.length);
+        PacketByteBuf encoded = new PacketByteBuf(Unpooled.wrappedBuffer(pieceData));
+        PacketByteBuf data = new PacketByteBuf(Unpooled.buffer(pieceData.length));
+        for (int i = 0; i < pieceTypes.length; i++) {
+            Identifier type = this.ids.apply(pieceTypes[i]);
+            buf.writeVarInt(ids.applyAsInt(type));
+            StructurePieceSummary.writeBox(buf, origin, pieceBoxes.get(i));
+            StructurePieceSummary.transcodeData(encoded, data, type, this.ids, ids);
+        }
+        buf.writeByteArray(ByteBufUtil.getBytes(data));
+    }
+
     public BlockBox getBoundingBox() {
         if (boundingBox == null) {
-            boundingBox = BlockBox.encompass(children.stream().map(StructurePieceSummary::getBoundingBox)::iterator).orElseThrow(() -> new IllegalStateException("Unable to calculate boundingbox without pieces"));
+            boundingBox = BlockBox.encompass(getPieceBoxes()).orElseThrow(() -> new IllegalStateException("Unable to calculate boundingbox without pieces"));
         }
         return boundingBox;
     }
 
+    /**
+     * The bounding box of each piece, available without materialising the pieces.
+     */
+    public List<BlockBox> getPieceBoxes() {
+        if (pieceBoxes == null) {
+            pieceBoxes = children.stream().map(StructurePieceSummary::getBoundingBox).toList();
+        }
+        return pieceBoxes;
+    }
+
     public Collection<StructurePieceSummary> getChildren() {
-        return children;
+        Collection<StructurePieceSummary> pieces = children;
+        if (pieces == null) {
+            synchronized (this) {
+                pieces = children;
+                if (pieces == null) {
+                    pieces = materialise();
+                    children = pieces;
+                    pieceTypes = null;
+                    pieceData = null;
+                    ids = null;
+                }
+            }
+        }
+        return pieces;
+    }
+
+    protected Collection<StructurePieceSummary> materialise() {
+        BlockPos origin = pos.getStartPos();
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.wrappedBuffer(pieceData));
+        List<StructurePieceSummary> pieces = new ArrayList<>(pieceTypes.length);
+        for (int i = 0; i < pieceTypes.length; i++) {
+            pieces.add(StructurePieceSummary.readData(buf, origin, ids, RegistryKey.of(RegistryKeys.STRUCTURE_PIECE, ids.apply(pieceTypes[i])), pieceBoxes.get(i)));
+        }
+        return pieces;
     }
 }
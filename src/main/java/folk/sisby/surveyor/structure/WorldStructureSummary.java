@@ -1,42 +1,68 @@
 package folk.sisby.surveyor.structure;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import folk.sisby.surveyor.Surveyor;
 import folk.sisby.surveyor.SurveyorEvents;
 import folk.sisby.surveyor.SurveyorExploration;
 import folk.sisby.surveyor.WorldSummary;
+import folk.sisby.surveyor.packet.S2CStructuresAddedPacket;
+import folk.sisby.surveyor.terrain.RegionSummary;
+import folk.sisby.surveyor.util.LongBloomFilter;
 import folk.sisby.surveyor.util.MapUtil;
+import folk.sisby.surveyor.util.RegionHashTree;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
 import net.minecraft.nbt.NbtIo;
-import net.minecraft.nbt.NbtList;
-import net.minecraft.nbt.NbtString;
 import net.minecraft.registry.Registries;
 import net.minecraft.registry.RegistryKey;
 import net.minecraft.registry.RegistryKeys;
 import net.minecraft.registry.tag.TagKey;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
+import net.minecraft.structure.PoolStructurePiece;
 import net.minecraft.structure.StructureContext;
 import net.minecraft.structure.StructurePiece;
 import net.minecraft.structure.StructurePieceType;
 import net.minecraft.structure.StructureStart;
 import net.minecraft.util.Identifier;
+import net.minecraft.util.Util;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.WorldChunk;
 import net.minecraft.world.gen.structure.Structure;
 import net.minecraft.world.gen.structure.StructureType;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 public class WorldStructureSummary {
     public static final String KEY_STRUCTURES = "structures";
@@ -44,18 +70,125 @@ public class WorldStructureSummary {
     public static final String KEY_TAGS = "tags";
     public static final String KEY_STARTS = "starts";
     public static final String KEY_PIECES = "pieces";
+    public static final int COMPACT_SEGMENTS = 8;
+    public static final int MAX_SEGMENTS = 64;
+    public static final int COMPACT_RATIO = 4; // Segments must add up to a quarter of the shard before it's rewritten
+    public static final int FILTER_BITS_POWER = 20;
+    public static final int FILTER_HASHES = 3;
+    private static final Map<File, CompletableFuture<Void>> COMPACTIONS = new ConcurrentHashMap<>();
 
     protected final RegistryKey<World> worldKey;
     protected final Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> structures = new ConcurrentHashMap<>();
     protected final Map<RegistryKey<Structure>, RegistryKey<StructureType<?>>> structureTypes = new ConcurrentHashMap<>();
     protected final Multimap<RegistryKey<Structure>, TagKey<Structure>> structureTags = Multimaps.synchronizedSetMultimap(HashMultimap.create());
-    protected boolean dirty = false;
+    protected final RegionHashTree hashTree = new RegionHashTree();
+    protected final LongBloomFilter startFilter = new LongBloomFilter(FILTER_BITS_POWER, FILTER_HASHES);
+    protected final Map<RegistryKey<Structure>, LongSet> startKeys = new ConcurrentHashMap<>();
+    protected final Long2ObjectMap<List<PieceBounds>> pieceIndex = new Long2ObjectOpenHashMap<>();
+    protected final Long2ObjectMap<Multimap<RegistryKey<Structure>, ChunkPos>> startsByRegion = new Long2ObjectOpenHashMap<>();
+    protected final Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> view = Collections.unmodifiableMap(Maps.transformValues(structures, Collections::unmodifiableMap));
+    protected final Multimap<RegistryKey<Structure>, ChunkPos> summarising = Multimaps.synchronizedSetMultimap(HashMultimap.create());
+    protected final Map<ServerPlayerEntity, Multimap<RegistryKey<Structure>, ChunkPos>> pendingSync = new HashMap<>();
+    protected final Long2ObjectMap<Multimap<RegistryKey<Structure>, ChunkPos>> unsavedStarts = new Long2ObjectOpenHashMap<>();
+    protected final Long2IntMap lastSegment = new Long2IntOpenHashMap();
+    protected final Long2IntMap compactedSegment = new Long2IntOpenHashMap();
+    protected final Long2LongMap shardBytes = new Long2LongOpenHashMap();
+    protected final Long2LongMap segmentBytes = new Long2LongOpenHashMap();
+    protected boolean migratingLegacy = false;
 
     public WorldStructureSummary(RegistryKey<World> worldKey, Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> structures, Map<RegistryKey<Structure>, RegistryKey<StructureType<?>>> structureTypes, Multimap<RegistryKey<Structure>, TagKey<Structure>> structureTags) {
         this.worldKey = worldKey;
         this.structures.putAll(structures);
         this.structureTypes.putAll(structureTypes);
         this.structureTags.putAll(structureTags);
+        this.structures.forEach((key, starts) -> starts.forEach((pos, summary) -> {
+            hashTree.toggle(RegionHashTree.regionOf(pos), RegionHashTree.hashStructure(key, pos));
+            index(key, pos, summary);
+        }));
+    }
+
+    /**
+     * A piece's bounding box (expanded by one block), bucketed into every chunk it overlaps.
+     */
+    protected record PieceBounds(RegistryKey<Structure> key, ChunkPos start, BlockBox box) {
+    }
+
+    @FunctionalInterface
+    public interface StartVisitor {
+        void visit(RegistryKey<Structure> key, ChunkPos pos, StructureStartSummary summary);
+    }
+
+    protected void index(RegistryKey<Structure> key, ChunkPos pos, StructureStartSummary summary) {
+        startKeys.computeIfAbsent(key, k -> LongSets.synchronize(new LongOpenHashSet())).add(pos.toLong());
+        startFilter.add(RegionHashTree.hashStructure(key, pos));
+        synchronized (pieceIndex) {
+            startsByRegion.computeIfAbsent(RegionHashTree.regionOf(pos), k -> HashMultimap.create()).put(key, pos);
+            for (BlockBox pieceBox : summary.getPieceBoxes()) {
+                PieceBounds bounds = new PieceBounds(key, pos, pieceBox.expand(1));
+                for (int x = bounds.box().getMinX() >> 4; x <= bounds.box().getMaxX() >> 4; x++) {
+                    for (int z = bounds.box().getMinZ() >> 4; z <= bounds.box().getMaxZ() >> 4; z++) {
+                        pieceIndex.computeIfAbsent(ChunkPos.toLong(x, z), k -> new ArrayList<>()).add(bounds);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits each structure starting within a range of chunks that the exploration has found, without copying the structure maps.
+     * Only the regions overlapping the range are looked at, and the visitor runs after the index lock is released.
+     */
+    public void query(ChunkPos min, ChunkPos max, @Nullable SurveyorExploration exploration, StartVisitor visitor) {
+        List<Map.Entry<RegistryKey<Structure>, ChunkPos>> found = new ArrayList<>();
+        synchronized (pieceIndex) {
+            for (int x = RegionSummary.chunkToRegion(min.x); x <= RegionSummary.chunkToRegion(max.x); x++) {
+                for (int z = RegionSummary.chunkToRegion(min.z); z <= RegionSummary.chunkToRegion(max.z); z++) {
+                    Multimap<RegistryKey<Structure>, ChunkPos> regionStarts = startsByRegion.get(ChunkPos.toLong(x, z));
+                    if (regionStarts == null) continue;
+                    for (Map.Entry<RegistryKey<Structure>, ChunkPos> entry : regionStarts.entries()) {
+                        ChunkPos pos = entry.getValue();
+                        if (pos.x >= min.x && pos.x <= max.x && pos.z >= min.z && pos.z <= max.z) found.add(Map.entry(entry.getKey(), pos));
+                    }
+                }
+            }
+        }
+        for (Map.Entry<RegistryKey<Structure>, ChunkPos> entry : found) {
+            if (exploration != null && !exploration.exploredStructure(worldKey, entry.getKey(), entry.getValue())) continue;
+            StructureStartSummary summary = structures.get(entry.getKey()).get(entry.getValue());
+            if (summary != null) visitor.visit(entry.getKey(), entry.getValue(), summary);
+        }
+    }
+
+    public boolean hasUnexploredPieces(ChunkPos chunkPos, SurveyorExploration exploration) {
+        synchronized (pieceIndex) {
+            List<PieceBounds> bucket = pieceIndex.get(chunkPos.toLong());
+            if (bucket == null) return false;
+            for (int i = 0; i < bucket.size(); i++) {
+                if (!exploration.exploredStructure(worldKey, bucket.get(i).key(), bucket.get(i).start())) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Calls {@code action} for every summarised structure with a piece within one block of {@code pos}.
+     * A structure may be visited once per matching piece. The action runs after the index lock is released.
+     */
+    public void forEachPieceAt(BlockPos pos, BiConsumer<RegistryKey<Structure>, ChunkPos> action) {
+        List<PieceBounds> found = null; // Only allocated on a hit - this runs for every player check.
+        synchronized (pieceIndex) {
+            List<PieceBounds> bucket = pieceIndex.get(ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4));
+            if (bucket == null) return;
+            for (int i = 0; i < bucket.size(); i++) {
+                if (!bucket.get(i).box().contains(pos)) continue;
+                if (found == null) found = new ArrayList<>();
+                found.add(bucket.get(i));
+            }
+        }
+        if (found == null) return;
+        for (int i = 0; i < found.size(); i++) {
+            action.accept(found.get(i).key(), found.get(i).start());
+        }
     }
 
     public RegistryKey<StructureType<?>> getType(RegistryKey<Structure> key) {
@@ -66,99 +199,274 @@ public class WorldStructureSummary {
         return structureTags.get(key);
     }
 
+    /**
+     * Checks the bloom filter before the start's key set - structures never seen before are usually ruled out without touching a set.
+     */
     public boolean contains(World world, StructureStart start) {
-        RegistryKey<Structure> key = world.getRegistryManager().get(RegistryKeys.STRUCTURE).getKey(start.getStructure()).orElseThrow();
-        return structures.containsKey(key) && structures.get(key).containsKey(start.getPos());
+        StructureIdentity identity = StructureIdentity.of(world.getRegistryManager(), start.getStructure());
+        long pos = start.getPos().toLong();
+        if (!startFilter.mightContain(RegionHashTree.hashStructure(identity.keyHash(), pos))) return false;
+        LongSet starts = startKeys.get(identity.key());
+        return starts != null && starts.contains(pos);
     }
 
     public boolean contains(RegistryKey<Structure> key, ChunkPos pos) {
-        return structures.containsKey(key) && structures.get(key).containsKey(pos);
+        LongSet starts = startKeys.get(key);
+        return starts != null && starts.contains(pos.toLong());
     }
 
     public StructureStartSummary get(RegistryKey<Structure> key, ChunkPos pos) {
         return structures.get(key).get(pos);
     }
 
+    /**
+     * A read-only live view of every structure, safe to iterate from any thread without copying.
+     * Iteration is weakly consistent - structures added meanwhile may or may not be seen.
+     */
+    public Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> view() {
+        return view;
+    }
+
+    /**
+     * Visits each structure the exploration has found, filtering while iterating the shared view instead of copying it.
+     */
+    public void forEach(@Nullable SurveyorExploration exploration, StartVisitor visitor) {
+        for (Map.Entry<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> entry : view().entrySet()) {
+            for (Map.Entry<ChunkPos, StructureStartSummary> start : entry.getValue().entrySet()) {
+                if (exploration == null || exploration.exploredStructure(worldKey, entry.getKey(), start.getKey())) visitor.visit(entry.getKey(), start.getKey(), start.getValue());
+            }
+        }
+    }
+
     public Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> asMap(SurveyorExploration exploration) {
-        Multimap<RegistryKey<Structure>, ChunkPos> keySet = keySet(exploration);
         Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> map = new HashMap<>();
-        keySet.forEach((key, pos) -> map.computeIfAbsent(key, k -> new HashMap<>()).put(pos, get(key, pos)));
+        forEach(exploration, (key, pos, summary) -> map.computeIfAbsent(key, k -> new HashMap<>()).put(pos, summary));
         return map;
     }
 
     public Multimap<RegistryKey<Structure>, ChunkPos> keySet(SurveyorExploration exploration) {
-        Multimap<RegistryKey<Structure>, ChunkPos> map = MapUtil.keyMultiMap(structures);
-        if (exploration != null) exploration.limitStructureKeySet(worldKey, map);
+        Multimap<RegistryKey<Structure>, ChunkPos> map = HashMultimap.create();
+        forEach(exploration, (key, pos, summary) -> map.put(key, pos));
         return map;
     }
 
-    protected static StructureStartSummary summarisePieces(StructureContext context, StructureStart start) {
-        List<StructurePieceSummary> pieces = new ArrayList<>();
-        for (StructurePiece piece : start.getChildren()) {
+    public RegionHashTree getHashTree() {
+        return hashTree;
+    }
+
+    public RegionHashTree getHashTree(SurveyorExploration exploration) {
+        if (exploration == null || Surveyor.CONFIG.shareAllStructures) return hashTree;
+        RegionHashTree tree = new RegionHashTree();
+        forEach(exploration, (key, pos, summary) -> tree.toggle(RegionHashTree.regionOf(pos), RegionHashTree.hashStructure(key, pos)));
+        return tree;
+    }
+
+    public void queueSync(ServerPlayerEntity player, RegistryKey<Structure> key, ChunkPos pos) {
+        synchronized (pendingSync) {
+            pendingSync.computeIfAbsent(player, p -> HashMultimap.create()).put(key, pos);
+        }
+    }
+
+    /**
+     * Sends structures queued by {@link #queueSync} since the last flush - called once per world tick.
+     * Players receiving identical structures share one encoded packet.
+     */
+    public void flushSync(ServerWorld world) {
+        Map<ServerPlayerEntity, Multimap<RegistryKey<Structure>, ChunkPos>> pending;
+        synchronized (pendingSync) {
+            if (pendingSync.isEmpty()) return;
+            pending = new HashMap<>(pendingSync);
+            pendingSync.clear();
+        }
+        MapUtil.groupByValue(pending).forEach((keys, players) -> {
+            Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> starts = new HashMap<>();
+            keys.forEach((key, pos) -> starts.computeIfAbsent(key, k -> new HashMap<>()).put(pos, get(key, pos)));
+            S2CStructuresAddedPacket.of(this, starts).send(players);
+        });
+    }
+
+    /**
+     * Copies everything needed from a start's pieces on the calling thread, returning the work left to finish off-thread.
+     * Plain pieces are summarised immediately (with their NBT, for small structures); pool pieces are snapshotted, leaving their template bounding boxes for later.
+     */
+    protected static List<Supplier<List<StructurePieceSummary>>> snapshotPieces(StructureContext context, List<StructurePiece> children) {
+        List<Supplier<List<StructurePieceSummary>>> pieces = new ArrayList<>(children.size());
+        for (StructurePiece piece : children) {
             if (piece.getType().equals(StructurePieceType.JIGSAW)) {
-                pieces.addAll(JigsawPieceSummary.tryFromPiece(piece));
+                if (!(piece instanceof PoolStructurePiece poolPiece)) continue;
+                JigsawPieceSummary.PoolPieceSnapshot snapshot = JigsawPieceSummary.PoolPieceSnapshot.of(poolPiece);
+                pieces.add(() -> JigsawPieceSummary.tryFromElement(snapshot.element(), snapshot));
             } else {
-                pieces.add(StructurePieceSummary.fromPiece(context, piece, start.getChildren().size() <= 10));
+                List<StructurePieceSummary> summary = List.of(StructurePieceSummary.fromPiece(context, piece, children.size() <= 10));
+                pieces.add(() -> summary);
             }
         }
+        return pieces;
+    }
+
+    protected static StructureStartSummary summarisePieces(List<Supplier<List<StructurePieceSummary>>> snapshots) {
+        List<StructurePieceSummary> pieces = new ArrayList<>();
+        for (Supplier<List<StructurePieceSummary>> snapshot : snapshots) {
+            pieces.addAll(snapshot.get());
+        }
         return new StructureStartSummary(pieces);
     }
 
+    /**
+     * Snapshots a newly found structure start's pieces on the calling thread, since world generation may still be using them,
+     * then finishes summarising it on the main worker executor. The summary is stored, and events and packets follow, back on the server thread once it's ready.
+     */
     public void put(ServerWorld world, StructureStart start) {
-        RegistryKey<Structure> key = world.getRegistryManager().get(RegistryKeys.STRUCTURE).getKey(start.getStructure()).orElseThrow();
-        structures.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+        StructureIdentity identity = StructureIdentity.of(world.getRegistryManager(), start.getStructure());
+        RegistryKey<Structure> key = identity.key();
         ChunkPos pos = start.getPos();
-        if (!structures.get(key).containsKey(pos)) {
-            StructureStartSummary summary = summarisePieces(StructureContext.from(world), start);
-            RegistryKey<StructureType<?>> type = world.getRegistryManager().get(RegistryKeys.STRUCTURE_TYPE).getKey(start.getStructure().getType()).orElseThrow();
-            List<TagKey<Structure>> tags = world.getRegistryManager().get(RegistryKeys.STRUCTURE).getEntry(start.getStructure()).streamTags().toList();
-            structures.get(key).put(pos, summary);
-            structureTypes.put(key, type);
-            structureTags.putAll(key, tags);
-            dirty = true;
+        if (contains(key, pos) || !summarising.put(key, pos)) return;
+        List<Supplier<List<StructurePieceSummary>>> snapshots = snapshotPieces(StructureContext.from(world), start.getChildren());
+        CompletableFuture.supplyAsync(() -> summarisePieces(snapshots), Util.getMainWorkerExecutor()).whenComplete((summary, throwable) -> world.getServer().execute(() -> {
+            summarising.remove(key, pos);
+            if (throwable != null) {
+                Surveyor.LOGGER.error("[Surveyor] Error summarising structure {} at {} in {}.", key.getValue(), pos, world.getRegistryKey().getValue(), throwable);
+                return;
+            }
+            if (contains(key, pos)) return;
+            structureTypes.put(key, identity.type());
+            structureTags.putAll(key, identity.tags());
+            structures.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(pos, summary);
+            index(key, pos, summary);
+            hashTree.toggle(RegionHashTree.regionOf(pos), RegionHashTree.hashStructure(key, pos));
+            markDirty(key, pos);
             SurveyorEvents.Invoke.structuresAdded(world, key, pos);
-        }
+        }));
     }
 
     public void put(World world, RegistryKey<Structure> key, ChunkPos pos, StructureStartSummary summary, RegistryKey<StructureType<?>> type, Collection<TagKey<Structure>> tagKeys) {
+        boolean added = !contains(key, pos);
         structures.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(pos, summary);
+        if (added) {
+            hashTree.toggle(RegionHashTree.regionOf(pos), RegionHashTree.hashStructure(key, pos));
+            index(key, pos, summary);
+        }
         structureTypes.put(key, type);
         structureTags.putAll(key, tagKeys);
-        dirty = true;
+        markDirty(key, pos);
         SurveyorEvents.Invoke.structuresAdded(world, key, pos);
     }
 
-    protected NbtCompound writeNbt(NbtCompound nbt) {
-        NbtCompound structuresCompound = new NbtCompound();
-        structures.forEach((key, starts) -> {
-            NbtCompound structureCompound = new NbtCompound();
-            structureCompound.putString(KEY_TYPE, structureTypes.get(key).getValue().toString());
-            structureCompound.put(KEY_TAGS, new NbtList(structureTags.get(key).stream().map(t -> (NbtElement) NbtString.of(t.id().toString())).toList(), NbtElement.STRING_TYPE));
-            NbtCompound startsCompound = new NbtCompound();
-            starts.forEach((pos, summary) -> {
-                NbtList pieceList = new NbtList(summary.getChildren().stream().map(p -> (NbtElement) p.toNbt()).toList(), NbtElement.COMPOUND_TYPE);
-                NbtCompound startCompound = new NbtCompound();
-                startCompound.put(KEY_PIECES, pieceList);
-                startsCompound.put("%s,%s".formatted(pos.x, pos.z), startCompound);
-            });
-            structureCompound.put(KEY_STARTS, startsCompound);
-            structuresCompound.put(key.getValue().toString(), structureCompound);
-        });
-        nbt.put(KEY_STRUCTURES, structuresCompound);
-        return nbt;
+    protected void markDirty(RegistryKey<Structure> key, ChunkPos pos) {
+        synchronized (unsavedStarts) {
+            unsavedStarts.computeIfAbsent(RegionHashTree.regionOf(pos), k -> HashMultimap.create()).put(key, pos);
+        }
+    }
+
+    /**
+     * The structures starting in one region, as stored in its shard file.
+     */
+    protected Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> regionMap(ChunkPos regionPos) {
+        Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> map = new HashMap<>();
+        int regionX = RegionSummary.regionToChunk(regionPos.x);
+        int regionZ = RegionSummary.regionToChunk(regionPos.z);
+        query(new ChunkPos(regionX, regionZ), new ChunkPos(regionX + RegionSummary.REGION_SIZE - 1, regionZ + RegionSummary.REGION_SIZE - 1), null, (key, pos, summary) -> map.computeIfAbsent(key, k -> new HashMap<>()).put(pos, summary));
+        return map;
+    }
+
+    protected static File getShardFile(File folder, ChunkPos regionPos) {
+        return new File(folder, "s.%d.%d.dat".formatted(regionPos.x, regionPos.z));
+    }
+
+    protected static File getSegmentFile(File folder, ChunkPos regionPos, int segment) {
+        return new File(folder, "s.%d.%d.%d.dat".formatted(regionPos.x, regionPos.z, segment));
+    }
+
+    protected void writeShard(File file, Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> starts) throws IOException {
+        NbtIo.writeCompressed(StructureShardCodec.write(this, starts), file);
     }
 
+    /**
+     * Appends the structures added since the last save to a new segment for each region.
+     * Shards and segments are written by {@link StructureShardCodec} - relative packed bounding boxes, with identifiers interned into a table per file.
+     * Once a region has {@link #COMPACT_SEGMENTS} segments adding up to a fair share of its shard (or {@link #MAX_SEGMENTS} regardless),
+     * they're folded back into its shard on the IO worker - so large regions aren't rewritten whole for every few structures found.
+     */
     public int save(World world, File folder) {
-        if (dirty) {
-            File structureFile = new File(folder, "structures.dat");
+        return save(folder);
+    }
+
+    protected int save(File folder) {
+        Long2ObjectMap<Multimap<RegistryKey<Structure>, ChunkPos>> unsaved;
+        synchronized (unsavedStarts) {
+            if (unsavedStarts.isEmpty()) return 0;
+            unsaved = new Long2ObjectOpenHashMap<>(unsavedStarts);
+            unsavedStarts.clear();
+        }
+        int saved = 0;
+        for (Long2ObjectMap.Entry<Multimap<RegistryKey<Structure>, ChunkPos>> entry : unsaved.long2ObjectEntrySet()) {
+            long region = entry.getLongKey();
+            ChunkPos regionPos = new ChunkPos(region);
+            int segment = lastSegment.get(region) + 1;
+            File segmentFile = getSegmentFile(folder, regionPos, segment);
+            Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> starts = new HashMap<>();
+            entry.getValue().forEach((key, pos) -> starts.computeIfAbsent(key, k -> new HashMap<>()).put(pos, get(key, pos)));
+            try {
+                writeShard(segmentFile, starts);
+                lastSegment.put(region, segment);
+                segmentBytes.put(region, segmentBytes.get(region) + segmentFile.length());
+                saved++;
+            } catch (IOException e) {
+                Surveyor.LOGGER.error("[Surveyor] Error writing structure summary file {} for {}.", segmentFile.getName(), worldKey.getValue(), e);
+                synchronized (unsavedStarts) {
+                    entry.getValue().forEach((key, pos) -> unsavedStarts.computeIfAbsent(region, k -> HashMultimap.create()).put(key, pos));
+                }
+                continue;
+            }
+            int segments = segment - compactedSegment.get(region);
+            if (segments >= MAX_SEGMENTS || segments >= COMPACT_SEGMENTS && segmentBytes.get(region) * COMPACT_RATIO >= shardBytes.get(region)) compact(folder, regionPos, compactedSegment.get(region), segment);
+        }
+        if (migratingLegacy && saved == unsaved.size()) {
+            migratingLegacy = false;
+            if (!new File(folder, "structures.dat").delete()) Surveyor.LOGGER.warn("[Surveyor] Couldn't remove migrated structure summary file for {}.", worldKey.getValue());
+        }
+        return saved;
+    }
+
+    /**
+     * Rewrites a region's shard with everything currently in it, then removes the segments it replaces.
+     * Starts that haven't been decoded are copied across in their encoded form.
+     * Compactions for the same folder run one at a time, and the folder's entry is dropped once its last compaction finishes.
+     * The shard is swapped in before its segments are removed, so an interrupted compaction only leaves redundant segments behind.
+     */
+    protected void compact(File folder, ChunkPos regionPos, int fromSegment, int toSegment) {
+        compactedSegment.put(regionPos.toLong(), toSegment);
+        shardBytes.put(regionPos.toLong(), shardBytes.get(regionPos.toLong()) + segmentBytes.remove(regionPos.toLong())); // Close enough until the next load
+        CompletableFuture<Void> compaction = COMPACTIONS.compute(folder, (f, previous) -> (previous == null ? CompletableFuture.<Void>completedFuture(null) : previous).thenRunAsync(() -> {
+            File shardFile = getShardFile(folder, regionPos);
+            File tempFile = new File(folder, shardFile.getName() + ".tmp");
             try {
-                NbtIo.writeCompressed(writeNbt(new NbtCompound()), structureFile);
+                writeShard(tempFile, regionMap(regionPos));
+                replaceFile(tempFile, shardFile);
+                for (int segment = fromSegment + 1; segment <= toSegment; segment++) {
+                    getSegmentFile(folder, regionPos, segment).delete();
+                }
             } catch (IOException e) {
-                Surveyor.LOGGER.error("[Surveyor] Error writing structure summary file for {}.", world.getRegistryKey().getValue(), e);
+                Surveyor.LOGGER.error("[Surveyor] Error compacting structure summary file {} for {}.", shardFile.getName(), worldKey.getValue(), e);
             }
-            return structures.size();
+        }, Util.getIoWorkerExecutor()));
+        compaction.whenComplete((v, t) -> COMPACTIONS.remove(folder, compaction));
+    }
+
+    /**
+     * Waits for the folder's compactions to finish - only for tests, as the game itself never needs to wait for them.
+     */
+    protected static void awaitCompactions(File folder) {
+        CompletableFuture<Void> compaction = COMPACTIONS.get(folder);
+        if (compaction != null) compaction.join();
+    }
+
+    protected static void replaceFile(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
-        return 0;
     }
 
     public static StructurePieceSummary readStructurePieceNbt(NbtCompound nbt) {
@@ -169,10 +477,7 @@ public class WorldStructureSummary {
         }
     }
 
-    protected static WorldStructureSummary readNbt(RegistryKey<World> worldKey, NbtCompound nbt) {
-        Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> structures = new ConcurrentHashMap<>();
-        Map<RegistryKey<Structure>, RegistryKey<StructureType<?>>> structureTypes = new ConcurrentHashMap<>();
-        Multimap<RegistryKey<Structure>, TagKey<Structure>> structureTags = HashMultimap.create();
+    protected static void readLegacyNbt(NbtCompound nbt, Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> structures, Map<RegistryKey<Structure>, RegistryKey<StructureType<?>>> structureTypes, Multimap<RegistryKey<Structure>, TagKey<Structure>> structureTags) {
         NbtCompound structuresCompound = nbt.getCompound(KEY_STRUCTURES);
         for (String structureId : structuresCompound.getKeys()) {
             RegistryKey<Structure> key = RegistryKey.of(RegistryKeys.STRUCTURE, new Identifier(structureId));
@@ -193,20 +498,99 @@ public class WorldStructureSummary {
                 structures.computeIfAbsent(key, p -> new ConcurrentHashMap<>()).put(new ChunkPos(x, z), new StructureStartSummary(pieces));
             }
         }
-        return new WorldStructureSummary(worldKey, structures, structureTypes, structureTags);
     }
 
+    /**
+     * Reads the legacy file, every region shard and every segment appended since - shards and segments are decoded in parallel, then merged in order.
+     * Doesn't wait for compactions left over from a previous load - a segment removed mid-load has already been folded into its shard, so that's read instead.
+     */
     public static WorldStructureSummary load(World world, File folder) {
-        NbtCompound structureNbt = new NbtCompound();
-        File structuresFile = new File(folder, "structures.dat");
-        if (structuresFile.exists()) {
+        return load(world.getRegistryKey(), folder);
+    }
+
+    protected static WorldStructureSummary load(RegistryKey<World> worldKey, File folder) {
+        Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> structures = new ConcurrentHashMap<>();
+        Map<RegistryKey<Structure>, RegistryKey<StructureType<?>>> structureTypes = new ConcurrentHashMap<>();
+        Multimap<RegistryKey<Structure>, TagKey<Structure>> structureTags = HashMultimap.create();
+        boolean legacy = false;
+        File legacyFile = new File(folder, "structures.dat");
+        if (legacyFile.exists()) {
             try {
-                structureNbt = NbtIo.readCompressed(structuresFile);
+                readLegacyNbt(NbtIo.readCompressed(legacyFile), structures, structureTypes, structureTags);
+                legacy = true;
             } catch (IOException e) {
-                Surveyor.LOGGER.error("[Surveyor] Error loading structure summary file for {}.", world.getRegistryKey().getValue(), e);
+                Surveyor.LOGGER.error("[Surveyor] Error loading structure summary file for {}.", worldKey.getValue(), e);
+            }
+        }
+        File[] shardFiles = folder.listFiles((file, name) -> {
+            String[] split = name.split("\\.");
+            if ((split.length == 4 || split.length == 5) && split[0].equals("s") && split[split.length - 1].equals("dat")) {
+                try {
+                    for (int i = 1; i < split.length - 1; i++) {
+                        Integer.parseInt(split[i]);
+                    }
+                    return true;
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            return false;
+        });
+        Long2IntMap firstSegment = new Long2IntOpenHashMap();
+        Long2IntMap lastSegment = new Long2IntOpenHashMap();
+        Long2LongMap shardBytes = new Long2LongOpenHashMap();
+        Long2LongMap segmentBytes = new Long2LongOpenHashMap();
+        if (shardFiles != null) {
+            List<CompletableFuture<StructureShardCodec.Shard>> reads = new ArrayList<>();
+            for (File shardFile : shardFiles) {
+                String[] split = shardFile.getName().split("\\.");
+                if (split.length == 5) {
+                    long region = ChunkPos.toLong(Integer.parseInt(split[1]), Integer.parseInt(split[2]));
+                    int segment = Integer.parseInt(split[3]);
+                    firstSegment.put(region, firstSegment.containsKey(region) ? Math.min(firstSegment.get(region), segment) : segment);
+                    lastSegment.put(region, Math.max(lastSegment.get(region), segment));
+                    segmentBytes.put(region, segmentBytes.get(region) + shardFile.length());
+                } else {
+                    shardBytes.put(ChunkPos.toLong(Integer.parseInt(split[1]), Integer.parseInt(split[2])), shardFile.length());
+                }
+                ChunkPos regionPos = new ChunkPos(Integer.parseInt(split[1]), Integer.parseInt(split[2]));
+                reads.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        NbtCompound nbt;
+                        try {
+                            nbt = NbtIo.readCompressed(shardFile);
+                        } catch (FileNotFoundException e) {
+                            if (split.length != 5) throw e;
+                            nbt = NbtIo.readCompressed(getShardFile(folder, regionPos));
+                        }
+                        StructureShardCodec.Shard shard = StructureShardCodec.read(nbt);
+                        if (shard == null) Surveyor.LOGGER.warn("[Surveyor] Skipping structure summary file {} for {} with unsupported format {}.", shardFile.getName(), worldKey.getValue(), nbt.getInt(StructureShardCodec.KEY_FORMAT));
+                        return shard;
+                    } catch (IOException e) {
+                        Surveyor.LOGGER.error("[Surveyor] Error loading structure summary file {} for {}.", shardFile.getName(), worldKey.getValue(), e);
+                        return null;
+                    }
+                }, Util.getMainWorkerExecutor()));
+            }
+            for (CompletableFuture<StructureShardCodec.Shard> read : reads) {
+                StructureShardCodec.Shard shard = read.join();
+                if (shard == null) continue;
+                shard.structures().forEach((key, starts) -> structures.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).putAll(starts));
+                structureTypes.putAll(shard.structureTypes());
+                structureTags.putAll(shard.structureTags());
+            }
+        }
+        WorldStructureSummary summary = new WorldStructureSummary(worldKey, structures, structureTypes, structureTags);
+        summary.lastSegment.putAll(lastSegment);
+        summary.shardBytes.putAll(shardBytes);
+        summary.segmentBytes.putAll(segmentBytes);
+        firstSegment.forEach((region, segment) -> summary.compactedSegment.put((long) region, segment - 1));
+        if (legacy) { // Migrate to region files on next save
+            summary.migratingLegacy = true;
+            synchronized (summary.unsavedStarts) {
+                summary.structures.forEach((key, starts) -> starts.keySet().forEach(pos -> summary.markDirty(key, pos)));
             }
         }
-        return WorldStructureSummary.readNbt(world.getRegistryKey(), structureNbt);
+        return summary;
     }
 
     public static void onChunkLoad(ServerWorld world, WorldChunk chunk) {
@@ -94,7 +94,7 @@ public class RegionSummary {
         return chunks[regionRelative(pos.x)][regionRelative(pos.z)];
     }
 
-    public BitSet bitSet() {
+    public synchronized BitSet bitSet() {
         BitSet bitSet = new BitSet(BITSET_SIZE);
         for (int x = 0; x < REGION_SIZE; x++) {
             for (int z = 0; z < REGION_SIZE; z++) {
@@ -104,7 +104,7 @@ public class RegionSummary {
         return bitSet;
     }
 
-    public void putChunk(World world, WorldChunk chunk) {
+    public synchronized void putChunk(World world, WorldChunk chunk) {
         chunks[regionRelative(chunk.getPos().x)][regionRelative(chunk.getPos().z)] = new ChunkSummary(world, chunk, DimensionSupport.getSummaryLayers(world), biomePalette, rawBiomePalette, blockPalette, rawBlockPalette, !(world instanceof ServerWorld));
         dirty = true;
     }
@@ -129,7 +129,7 @@ public class RegionSummary {
         return this;
     }
 
-    public NbtCompound writeNbt(DynamicRegistryManager manager, NbtCompound nbt, ChunkPos regionPos) {
+    public synchronized NbtCompound writeNbt(DynamicRegistryManager manager, NbtCompound nbt, ChunkPos regionPos) {
         nbt.put(KEY_BIOMES, new NbtList(mapPalette(biomePalette, b -> NbtString.of(manager.get(RegistryKeys.BIOME).getId(b).toString())), NbtElement.STRING_TYPE));
         nbt.put(KEY_BLOCKS, new NbtList(mapPalette(blockPalette, b -> NbtString.of(manager.get(RegistryKeys.BLOCK).getId(b).toString())), NbtElement.STRING_TYPE));
         nbt.putIntArray(KEY_BIOME_WATER, mapPalette(biomePalette, Biome::getWaterColor));
@@ -146,7 +146,7 @@ public class RegionSummary {
         return nbt;
     }
 
-    public BitSet readBuf(DynamicRegistryManager manager, PacketByteBuf buf) {
+    public synchronized BitSet readBuf(DynamicRegistryManager manager, PacketByteBuf buf) {
         Registry<Biome> biomeRegistry = manager.get(RegistryKeys.BIOME);
         int[] rawBiomes = buf.readList(PacketByteBuf::readVarInt).stream().mapToInt(i -> i).toArray();
         Map<Integer, Integer> biomeRemap = new Int2IntArrayMap();
@@ -171,7 +171,7 @@ public class RegionSummary {
         return set;
     }
 
-    public PacketByteBuf writeBuf(PacketByteBuf buf, BitSet set) {
+    public synchronized PacketByteBuf writeBuf(PacketByteBuf buf, BitSet set) {
         buf.writeCollection(mapPalette(rawBiomePalette, i -> i), PacketByteBuf::writeVarInt);
         buf.writeCollection(mapPalette(rawBlockPalette, i -> i), PacketByteBuf::writeVarInt);
         buf.writeBitSet(set);
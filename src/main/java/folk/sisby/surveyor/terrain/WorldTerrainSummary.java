@@ -5,9 +5,13 @@ import folk.sisby.surveyor.SurveyorEvents;
 import folk.sisby.surveyor.SurveyorExploration;
 import folk.sisby.surveyor.WorldSummary;
 import folk.sisby.surveyor.util.ChunkUtil;
+import folk.sisby.surveyor.util.RegionBitmap;
+import folk.sisby.surveyor.util.RegionHashTree;
 import net.minecraft.block.Block;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtIo;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.registry.DynamicRegistryManager;
 import net.minecraft.registry.RegistryKey;
 import net.minecraft.util.collection.IndexedIterable;
 import net.minecraft.util.math.ChunkPos;
@@ -19,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
@@ -30,10 +35,18 @@ import java.util.concurrent.ConcurrentHashMap;
 public class WorldTerrainSummary {
     protected final RegistryKey<World> worldKey;
     protected final Map<ChunkPos, RegionSummary> regions = new ConcurrentHashMap<>();
+    protected final RegionHashTree hashTree = new RegionHashTree();
+    protected final Map<ChunkPos, BitSet> regionBits = new ConcurrentHashMap<>(); // Replaced per region on change, never modified
+    protected final Map<ChunkPos, BitSet> view = Collections.unmodifiableMap(regionBits);
 
     public WorldTerrainSummary(RegistryKey<World> worldKey, Map<ChunkPos, RegionSummary> regions) {
         this.worldKey = worldKey;
         this.regions.putAll(regions);
+        this.regions.forEach((rPos, region) -> {
+            BitSet bits = region.bitSet();
+            regionBits.put(rPos, bits);
+            hashTree.set(rPos.toLong(), RegionHashTree.hashRegionBits(rPos, bits));
+        });
     }
 
     protected static ChunkPos regionPosOf(ChunkPos pos) {
@@ -64,12 +77,41 @@ public class WorldTerrainSummary {
         return regions.get(regionPos).getBlockPalette();
     }
 
+    /**
+     * A live view of which chunks are summarised in each region. Each region's bitset is copied on write - a changed region gets a new bitset,
+     * so readers on any thread see a consistent bitset per region without the whole map being copied. The bitsets must not be modified.
+     */
+    public Map<ChunkPos, BitSet> view() {
+        return view;
+    }
+
     public Map<ChunkPos, BitSet> bitSet(SurveyorExploration exploration) {
         Map<ChunkPos, BitSet> map = new HashMap<>();
-        regions.forEach((p, r) -> map.put(p, r.bitSet()));
+        view().forEach((p, bits) -> map.put(p, (BitSet) bits.clone()));
         return exploration == null ? map : exploration.limitTerrainBitset(worldKey, map);
     }
 
+    public RegionHashTree getHashTree() {
+        return hashTree;
+    }
+
+    /**
+     * The hash tree of the terrain an exploration has seen, built from the shared view one explored region at a time.
+     */
+    public RegionHashTree getHashTree(SurveyorExploration exploration) {
+        if (exploration == null || Surveyor.CONFIG.shareAllTerrain) return hashTree;
+        RegionHashTree tree = new RegionHashTree();
+        RegionBitmap explored = exploration.terrain().get(worldKey);
+        if (explored == null) return tree;
+        view().forEach((rPos, bits) -> {
+            BitSet visible = explored.getRegion(rPos);
+            if (visible == null) return;
+            visible.and(bits);
+            tree.set(rPos.toLong(), RegionHashTree.hashRegionBits(rPos, visible));
+        });
+        return tree;
+    }
+
     public static Set<ChunkPos> toKeys(Map<ChunkPos, BitSet> bitSets) {
         return toKeys(bitSets, Comparator.comparingInt(pos -> pos.x + pos.z));
     }
@@ -85,8 +127,29 @@ public class WorldTerrainSummary {
         return set;
     }
 
+    public BitSet readBuf(DynamicRegistryManager manager, ChunkPos regionPos, PacketByteBuf buf) {
+        RegionSummary region = getRegion(regionPos);
+        BitSet added = region.bitSet();
+        BitSet chunks = region.readBuf(manager, buf);
+        regionBits.put(regionPos, region.bitSet());
+        added.flip(0, RegionSummary.BITSET_SIZE);
+        added.and(chunks);
+        added.stream().forEach(i -> hashTree.toggle(regionPos.toLong(), RegionHashTree.hashChunk(RegionSummary.regionToChunk(regionPos.x) + RegionSummary.xForBit(i), RegionSummary.regionToChunk(regionPos.z) + RegionSummary.zForBit(i))));
+        return chunks;
+    }
+
     public void put(World world, WorldChunk chunk) {
-        regions.computeIfAbsent(regionPosOf(chunk.getPos()), k -> new RegionSummary()).putChunk(world, chunk);
+        boolean added = !contains(chunk.getPos());
+        ChunkPos regionPos = regionPosOf(chunk.getPos());
+        regions.computeIfAbsent(regionPos, k -> new RegionSummary()).putChunk(world, chunk);
+        if (added) {
+            hashTree.toggle(regionPos.toLong(), RegionHashTree.hashChunk(chunk.getPos().x, chunk.getPos().z));
+            regionBits.compute(regionPos, (k, bits) -> {
+                BitSet copy = bits == null ? new BitSet(RegionSummary.BITSET_SIZE) : (BitSet) bits.clone();
+                copy.set(RegionSummary.bitForChunk(chunk.getPos()));
+                return copy;
+            });
+        }
         SurveyorEvents.Invoke.terrainUpdated(world, chunk.getPos());
     }
 
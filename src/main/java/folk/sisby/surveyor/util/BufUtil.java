@@ -0,0 +1,17 @@
+package folk.sisby.surveyor.util;
+
+import net.minecraft.network.PacketByteBuf;
+
+public class BufUtil {
+    /**
+     * Writes a signed int as a zigzag varint, so small negative values stay small.
+     */
+    public static void writeSignedVarInt(PacketByteBuf buf, int value) {
+        buf.writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    public static int readSignedVarInt(PacketByteBuf buf) {
+        int value = buf.readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
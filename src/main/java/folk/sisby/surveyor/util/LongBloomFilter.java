@@ -0,0 +1,39 @@
+package folk.sisby.surveyor.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size bloom filter over 64-bit hashes, safe to add to and query from any thread.
+ * Each hash sets {@code hashes} bits, derived from its low and high halves by double hashing.
+ */
+public class LongBloomFilter {
+    protected final AtomicLongArray words;
+    protected final int mask;
+    protected final int hashes;
+
+    public LongBloomFilter(int bitsPower, int hashes) {
+        this.words = new AtomicLongArray(1 << Math.max(0, bitsPower - 6));
+        this.mask = (1 << bitsPower) - 1;
+        this.hashes = hashes;
+    }
+
+    private int bit(long hash, int i) {
+        return ((int) hash + i * ((int) (hash >>> 32) | 1)) & mask;
+    }
+
+    public void add(long hash) {
+        for (int i = 0; i < hashes; i++) {
+            int bit = bit(hash, i);
+            long bitMask = 1L << bit;
+            if ((words.get(bit >>> 6) & bitMask) == 0) words.accumulateAndGet(bit >>> 6, bitMask, (a, b) -> a | b);
+        }
+    }
+
+    public boolean mightContain(long hash) {
+        for (int i = 0; i < hashes; i++) {
+            int bit = bit(hash, i);
+            if ((words.get(bit >>> 6) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+}
@@ -3,8 +3,11 @@ package folk.sisby.surveyor.util;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 public class MapUtil {
@@ -19,4 +22,10 @@ public class MapUtil {
         asMap.forEach((key, innerMap) -> map.putAll(key, new HashSet<>(innerMap.keySet())));
         return map;
     }
+
+    public static <K, V> Map<V, List<K>> groupByValue(Map<K, V> map) {
+        Map<V, List<K>> groups = new HashMap<>();
+        map.forEach((key, value) -> groups.computeIfAbsent(value, v -> new ArrayList<>()).add(key));
+        return groups;
+    }
 }
@@ -4,6 +4,11 @@ import net.minecraft.registry.Registry;
 import net.minecraft.util.collection.Int2ObjectBiMap;
 
 public class PaletteUtil {
+    public static <T> int idOrAdd(Int2ObjectBiMap<T> palette, T value) {
+        int id = palette.getRawId(value);
+        return id == -1 ? palette.add(value) : id;
+    }
+
     public static <T> int idOrAdd(Int2ObjectBiMap<T> palette, Int2ObjectBiMap<Integer> rawPalette, T value, Registry<T> registry) {
         int id = palette.getRawId(value);
         if (id == -1) {
@@ -3,6 +3,7 @@ package folk.sisby.surveyor.util;
 import net.minecraft.block.BlockState;
 import net.minecraft.fluid.FluidState;
 import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerChunkManager;
 import net.minecraft.util.hit.BlockHitResult;
 import net.minecraft.util.hit.HitResult;
 import net.minecraft.util.math.BlockPos;
@@ -12,29 +13,95 @@ import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.util.shape.VoxelShape;
 import net.minecraft.world.BlockView;
+import net.minecraft.world.Heightmap;
 import net.minecraft.world.RaycastContext;
 import net.minecraft.world.chunk.WorldChunk;
+import org.jetbrains.annotations.Nullable;
 
 public class RaycastUtil {
-    public static HitResult playerViewRaycast(ServerPlayerEntity player, int renderDistance) {
+    /**
+     * The distance along a ray from the camera to the player's rendering cylinder.
+     */
+    public static double viewDistance(ServerPlayerEntity player, Vec3d cameraPos, Vec3d direction, int renderDistance) {
         // Calculate View Distance to Rendering Cylinder
-        Vec3d cameraPos = player.getCameraPosVec(1.0F);
-        double pitch = player.getPitch(1.0F);
-        double phi = -pitch * (float) (Math.PI / 180.0);
+        double phi = Math.asin(MathHelper.clamp(direction.y, -1.0, 1.0));
         int blockRadius = renderDistance << 4;
         double y = blockRadius * Math.tan(phi);
-        double distance;
         double bottom = player.getWorld().getBottomY() - cameraPos.y;
         double top = player.getWorld().getTopY() - cameraPos.y;
         if (y < bottom || y > top) { // Distance To Circular Planes
-            distance = Math.abs(MathHelper.clamp(y, bottom, top) / Math.sin(phi));
+            return Math.abs(MathHelper.clamp(y, bottom, top) / Math.sin(phi));
         } else { // Distance To Curved Surface
-            distance = Math.sqrt(y * y + blockRadius * blockRadius);
+            return Math.sqrt(y * y + blockRadius * blockRadius);
         }
+    }
 
-        // Scale Cartesian Rotation Vector By Distance
+    public static HitResult playerViewRaycast(ServerPlayerEntity player, int renderDistance) {
+        Vec3d cameraPos = player.getCameraPosVec(1.0F);
         Vec3d cameraRotation = player.getRotationVec(1.0F);
-        Vec3d endPos = cameraPos.add(cameraRotation.x * distance, cameraRotation.y * distance, cameraRotation.z * distance);
+        return raycast(player, cameraPos, cameraPos.add(cameraRotation.multiply(viewDistance(player, cameraPos, cameraRotation, renderDistance))));
+    }
+
+    /**
+     * Remembers the last chunk looked up, as a ray steps through the same chunk many times in a row.
+     */
+    private static class ChunkCache {
+        private final ServerChunkManager chunkManager;
+        private boolean cached = false;
+        private int chunkX;
+        private int chunkZ;
+        private @Nullable WorldChunk chunk;
+
+        private ChunkCache(ServerPlayerEntity player) {
+            this.chunkManager = player.getServerWorld().getChunkManager();
+        }
+
+        private @Nullable WorldChunk get(int x, int z) {
+            int newChunkX = ChunkSectionPos.getSectionCoord(x);
+            int newChunkZ = ChunkSectionPos.getSectionCoord(z);
+            if (!cached || newChunkX != chunkX || newChunkZ != chunkZ) {
+                chunk = chunkManager.getWorldChunk(newChunkX, newChunkZ);
+                chunkX = newChunkX;
+                chunkZ = newChunkZ;
+                cached = true;
+            }
+            return chunk;
+        }
+    }
+
+    /**
+     * Like {@link #playerViewRaycast}, but walks the ray column-by-column against chunk heightmaps,
+     * only testing block shapes in the few columns where the ray meets the surface.
+     * Overhangs are ignored, so this is only suitable for finding roughly where a player is looking.
+     */
+    public static HitResult coarseRaycast(ServerPlayerEntity player, Vec3d cameraPos, Vec3d direction, int renderDistance) {
+        Vec3d endPos = cameraPos.add(direction.multiply(viewDistance(player, cameraPos, direction, renderDistance)));
+        ChunkCache chunks = new ChunkCache(player);
+        int startHeight = surfaceHeight(chunks, MathHelper.floor(cameraPos.x), MathHelper.floor(cameraPos.z));
+        if (startHeight == Integer.MIN_VALUE || cameraPos.y <= startHeight) return raycast(player, cameraPos, endPos); // Underground - the precise ray won't go far.
+        Vec3d delta = endPos.subtract(cameraPos);
+        int steps = MathHelper.ceil(Math.sqrt(delta.x * delta.x + delta.z * delta.z));
+        if (steps == 0) return raycast(player, cameraPos, endPos);
+        Vec3d step = delta.multiply(1.0 / steps);
+        for (int i = 1; i <= steps; i++) {
+            Vec3d pos = cameraPos.add(step.multiply(i));
+            int height = surfaceHeight(chunks, MathHelper.floor(pos.x), MathHelper.floor(pos.z));
+            if (height == Integer.MIN_VALUE) return BlockHitResult.createMissed(pos, Direction.getFacing(-step.x, -step.y, -step.z), BlockPos.ofFloored(pos));
+            if (pos.y <= height + 1) {
+                HitResult hit = raycast(player, cameraPos.add(step.multiply(Math.max(i - 2, 0))), cameraPos.add(step.multiply(Math.min(i + 2, steps))));
+                if (hit.getType() != HitResult.Type.MISS) return hit;
+            }
+        }
+        return BlockHitResult.createMissed(endPos, Direction.getFacing(-step.x, -step.y, -step.z), BlockPos.ofFloored(endPos));
+    }
+
+    private static int surfaceHeight(ChunkCache chunks, int x, int z) {
+        WorldChunk chunk = chunks.get(x, z);
+        return chunk == null ? Integer.MIN_VALUE : chunk.sampleHeightmap(Heightmap.Type.MOTION_BLOCKING, x & 15, z & 15);
+    }
+
+    public static HitResult raycast(ServerPlayerEntity player, Vec3d cameraPos, Vec3d endPos) {
+        ChunkCache chunks = new ChunkCache(player);
         return BlockView.raycast(
             cameraPos,
             endPos,
@@ -42,7 +109,7 @@ public class RaycastUtil {
                 cameraPos, endPos, RaycastContext.ShapeType.OUTLINE, RaycastContext.FluidHandling.NONE, player
             ),
             (innerContext, pos) -> {
-                WorldChunk chunk = player.getServerWorld().getChunkManager().getWorldChunk(ChunkSectionPos.getSectionCoord(pos.getX()), ChunkSectionPos.getSectionCoord(pos.getZ()));
+                WorldChunk chunk = chunks.get(pos.getX(), pos.getZ());
                 if (chunk == null) {
                     Vec3d vec3d = innerContext.getStart().subtract(innerContext.getEnd());
                     return BlockHitResult.createMissed(pos.toCenterPos(), Direction.getFacing(vec3d.x, vec3d.y, vec3d.z), pos);
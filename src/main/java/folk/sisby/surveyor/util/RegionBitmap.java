@@ -0,0 +1,417 @@
+package folk.sisby.surveyor.util;
+
+import folk.sisby.surveyor.terrain.RegionSummary;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.math.ChunkPos;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compressed set of chunks, split into one container per region (Roaring-style).
+ * Sparse regions hold a sorted array of chunk bits, dense regions a fixed 1024-bit word array, and fully explored regions nothing at all.
+ * Bits are in {@link RegionSummary#bitForXZ} order, matching {@link BitSet#toLongArray()}.
+ * Regions are keyed by packed region coordinates, so checking a chunk doesn't allocate.
+ */
+public class RegionBitmap {
+    public static final int WORDS = RegionSummary.BITSET_SIZE >> 6;
+    public static final int ARRAY_MAX = WORDS * 4; // An array container this size takes the same space as a bitmap.
+    private static final byte TYPE_ARRAY = 0;
+    private static final byte TYPE_BITMAP = 1;
+    private static final byte TYPE_FULL = 2;
+
+    protected final Long2ObjectMap<Container> regions = new Long2ObjectOpenHashMap<>();
+
+    public static long regionKey(int chunkX, int chunkZ) {
+        return ChunkPos.toLong(RegionSummary.chunkToRegion(chunkX), RegionSummary.chunkToRegion(chunkZ));
+    }
+
+    private static int bit(int chunkX, int chunkZ) {
+        return RegionSummary.bitForXZ(RegionSummary.regionRelative(chunkX), RegionSummary.regionRelative(chunkZ));
+    }
+
+    public boolean contains(int chunkX, int chunkZ) {
+        Container container = regions.get(regionKey(chunkX, chunkZ));
+        return container != null && container.contains(bit(chunkX, chunkZ));
+    }
+
+    /**
+     * @return whether the chunk was newly added.
+     */
+    public boolean add(int chunkX, int chunkZ) {
+        long key = regionKey(chunkX, chunkZ);
+        int bit = bit(chunkX, chunkZ);
+        Container container = regions.get(key);
+        if (container == null) {
+            regions.put(key, new ArrayContainer(ARRAY_MAX).add(bit));
+            return true;
+        }
+        if (container.contains(bit)) return false;
+        Container added = container.add(bit);
+        if (added != container) regions.put(key, added);
+        return true;
+    }
+
+    public void or(ChunkPos regionPos, BitSet bits) {
+        if (bits.isEmpty()) return;
+        Container container = regions.get(regionPos.toLong());
+        regions.put(regionPos.toLong(), container == null ? Container.of(Arrays.copyOf(bits.toLongArray(), WORDS)) : container.or(bits.toLongArray()));
+    }
+
+    public void or(RegionBitmap other) {
+        for (Long2ObjectMap.Entry<Container> entry : other.regions.long2ObjectEntrySet()) {
+            Container container = regions.get(entry.getLongKey());
+            regions.put(entry.getLongKey(), container == null ? entry.getValue().copy() : container.or(entry.getValue().toWords()));
+        }
+    }
+
+    /**
+     * Removes any chunks from the given region bits that aren't in this bitmap.
+     */
+    public void limit(ChunkPos regionPos, BitSet bits) {
+        Container container = regions.get(regionPos.toLong());
+        if (container == null) {
+            bits.clear();
+        } else if (!(container instanceof FullContainer)) {
+            bits.and(BitSet.valueOf(container.toWords()));
+        }
+    }
+
+    public @Nullable BitSet getRegion(ChunkPos regionPos) {
+        Container container = regions.get(regionPos.toLong());
+        return container == null ? null : BitSet.valueOf(container.toWords());
+    }
+
+    public Map<ChunkPos, BitSet> asBitSets() {
+        Map<ChunkPos, BitSet> map = new HashMap<>();
+        for (Long2ObjectMap.Entry<Container> entry : regions.long2ObjectEntrySet()) {
+            map.put(new ChunkPos(entry.getLongKey()), BitSet.valueOf(entry.getValue().toWords()));
+        }
+        return map;
+    }
+
+    public int regionCount() {
+        return regions.size();
+    }
+
+    public RegionBitmap copy() {
+        RegionBitmap copy = new RegionBitmap();
+        for (Long2ObjectMap.Entry<Container> entry : regions.long2ObjectEntrySet()) {
+            copy.regions.put(entry.getLongKey(), entry.getValue().copy());
+        }
+        return copy;
+    }
+
+    private static long spread(int value) {
+        long x = value & 0xFFFFFFFFL;
+        x = (x | (x << 16)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x << 8)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x << 2)) & 0x3333333333333333L;
+        x = (x | (x << 1)) & 0x5555555555555555L;
+        return x;
+    }
+
+    private static int compact(long x) {
+        x &= 0x5555555555555555L;
+        x = (x | (x >>> 1)) & 0x3333333333333333L;
+        x = (x | (x >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x >>> 4)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x >>> 8)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x >>> 16)) & 0x00000000FFFFFFFFL;
+        return (int) x;
+    }
+
+    /**
+     * Interleaves region coordinates (offset to unsigned) into a Z-order curve index, so nearby regions sort close together.
+     */
+    public static long mortonKey(int regionX, int regionZ) {
+        return spread(regionX ^ Integer.MIN_VALUE) | (spread(regionZ ^ Integer.MIN_VALUE) << 1);
+    }
+
+    public static ChunkPos fromMortonKey(long morton) {
+        return new ChunkPos(compact(morton) ^ Integer.MIN_VALUE, compact(morton >>> 1) ^ Integer.MIN_VALUE);
+    }
+
+    /**
+     * Writes regions in Z-order with delta-encoded keys, followed by each region's container.
+     */
+    public byte[] toBytes() {
+        long[] mortonKeys = new long[regions.size()];
+        Long2ObjectMap<Container> byMorton = new Long2ObjectOpenHashMap<>(regions.size());
+        int i = 0;
+        for (Long2ObjectMap.Entry<Container> entry : regions.long2ObjectEntrySet()) {
+            long morton = mortonKey(ChunkPos.getPackedX(entry.getLongKey()), ChunkPos.getPackedZ(entry.getLongKey()));
+            mortonKeys[i++] = morton;
+            byMorton.put(morton, entry.getValue());
+        }
+        LongArrays.unstableSort(mortonKeys, Long::compareUnsigned);
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+        buf.writeVarInt(mortonKeys.length);
+        long previous = 0;
+        for (long morton : mortonKeys) {
+            buf.writeVarLong(morton - previous);
+            previous = morton;
+            byMorton.get(morton).write(buf);
+        }
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        return bytes;
+    }
+
+    public static RegionBitmap fromBytes(byte[] bytes) {
+        RegionBitmap bitmap = new RegionBitmap();
+        if (bytes.length == 0) return bitmap;
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.wrappedBuffer(bytes));
+        int count = buf.readVarInt();
+        long morton = 0;
+        for (int i = 0; i < count; i++) {
+            morton += buf.readVarLong();
+            bitmap.regions.put(fromMortonKey(morton).toLong(), Container.read(buf));
+        }
+        return bitmap;
+    }
+
+    /**
+     * Reads the legacy NBT long array format - [region key, word count (or -1 for a full region), words...] per region.
+     */
+    public static RegionBitmap fromLongArray(long[] regionArray) {
+        RegionBitmap bitmap = new RegionBitmap();
+        for (int i = 0; i + 1 < regionArray.length; i += 2) {
+            long key = regionArray[i];
+            int length = (int) regionArray[i + 1];
+            if (length == -1) {
+                bitmap.regions.put(key, FullContainer.INSTANCE);
+            } else {
+                long[] words = new long[WORDS];
+                System.arraycopy(regionArray, i + 2, words, 0, Math.min(length, WORDS));
+                bitmap.regions.put(key, Container.of(words));
+                i += length;
+            }
+        }
+        return bitmap;
+    }
+
+    protected abstract static class Container {
+        abstract boolean contains(int bit);
+
+        /**
+         * Adds an absent bit, returning the container to replace this one with.
+         */
+        abstract Container add(int bit);
+
+        abstract int cardinality();
+
+        abstract long[] toWords();
+
+        abstract Container copy();
+
+        abstract void write(PacketByteBuf buf);
+
+        Container or(long[] otherWords) {
+            long[] words = toWords();
+            for (int i = 0; i < Math.min(otherWords.length, WORDS); i++) {
+                words[i] |= otherWords[i];
+            }
+            return of(words);
+        }
+
+        static Container of(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality == RegionSummary.BITSET_SIZE) return FullContainer.INSTANCE;
+            if (cardinality > ARRAY_MAX) return new BitmapContainer(words, cardinality);
+            ArrayContainer array = new ArrayContainer(cardinality);
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    array.values[array.size++] = (short) ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return array;
+        }
+
+        static Container read(PacketByteBuf buf) {
+            byte type = buf.readByte();
+            if (type == TYPE_FULL) return FullContainer.INSTANCE;
+            if (type == TYPE_BITMAP) {
+                long[] words = new long[WORDS];
+                for (int i = 0; i < WORDS; i++) {
+                    words[i] = buf.readLong();
+                }
+                return of(words);
+            }
+            ArrayContainer array = new ArrayContainer(buf.readVarInt());
+            int value = 0;
+            while (array.size < array.values.length) {
+                value += buf.readVarInt();
+                array.values[array.size++] = (short) value;
+            }
+            return array;
+        }
+    }
+
+    /**
+     * Containers created by {@link #add} start at full capacity, so exploring a region never reallocates its array;
+     * decoded containers are sized exactly, and grow to full capacity at most once.
+     */
+    protected static class ArrayContainer extends Container {
+        short[] values;
+        int size = 0;
+
+        ArrayContainer(int capacity) {
+            this.values = new short[capacity];
+        }
+
+        ArrayContainer(short[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        boolean contains(int bit) {
+            return Arrays.binarySearch(values, 0, size, (short) bit) >= 0;
+        }
+
+        @Override
+        Container add(int bit) {
+            if (size == ARRAY_MAX) {
+                long[] words = toWords();
+                words[bit >> 6] |= 1L << bit;
+                return new BitmapContainer(words, size + 1);
+            }
+            int index = -Arrays.binarySearch(values, 0, size, (short) bit) - 1;
+            if (size == values.length) values = Arrays.copyOf(values, ARRAY_MAX);
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = (short) bit;
+            size++;
+            return this;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        long[] toWords() {
+            long[] words = new long[WORDS];
+            for (int i = 0; i < size; i++) {
+                words[values[i] >> 6] |= 1L << values[i];
+            }
+            return words;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(values.clone(), size);
+        }
+
+        @Override
+        void write(PacketByteBuf buf) {
+            buf.writeByte(TYPE_ARRAY);
+            buf.writeVarInt(size);
+            int previous = 0;
+            for (int i = 0; i < size; i++) {
+                buf.writeVarInt(values[i] - previous);
+                previous = values[i];
+            }
+        }
+    }
+
+    protected static class BitmapContainer extends Container {
+        final long[] words;
+        int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        boolean contains(int bit) {
+            return (words[bit >> 6] & (1L << bit)) != 0;
+        }
+
+        @Override
+        Container add(int bit) {
+            words[bit >> 6] |= 1L << bit;
+            cardinality++;
+            return cardinality == RegionSummary.BITSET_SIZE ? FullContainer.INSTANCE : this;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        long[] toWords() {
+            return words.clone();
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        void write(PacketByteBuf buf) {
+            buf.writeByte(TYPE_BITMAP);
+            for (long word : words) {
+                buf.writeLong(word);
+            }
+        }
+    }
+
+    protected static class FullContainer extends Container {
+        static final FullContainer INSTANCE = new FullContainer();
+
+        @Override
+        boolean contains(int bit) {
+            return true;
+        }
+
+        @Override
+        Container add(int bit) {
+            return this;
+        }
+
+        @Override
+        int cardinality() {
+            return RegionSummary.BITSET_SIZE;
+        }
+
+        @Override
+        long[] toWords() {
+            long[] words = new long[WORDS];
+            Arrays.fill(words, -1L);
+            return words;
+        }
+
+        @Override
+        Container or(long[] otherWords) {
+            return this;
+        }
+
+        @Override
+        Container copy() {
+            return this;
+        }
+
+        @Override
+        void write(PacketByteBuf buf) {
+            buf.writeByte(TYPE_FULL);
+        }
+    }
+}
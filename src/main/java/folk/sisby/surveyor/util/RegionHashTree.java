@@ -0,0 +1,150 @@
+package folk.sisby.surveyor.util;
+
+import folk.sisby.surveyor.landmark.HasAxis;
+import folk.sisby.surveyor.landmark.HasBlockBox;
+import folk.sisby.surveyor.landmark.HasCreated;
+import folk.sisby.surveyor.landmark.HasPoiType;
+import folk.sisby.surveyor.landmark.HasSeed;
+import folk.sisby.surveyor.landmark.Landmark;
+import folk.sisby.surveyor.landmark.LandmarkType;
+import folk.sisby.surveyor.terrain.RegionSummary;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.gen.structure.Structure;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.UUID;
+
+/**
+ * A two-level hash tree (world -> region -> element) over a set of keys.
+ * Element hashes are combined with XOR, so adding or removing a key only touches its region and the root.
+ * Hashes are stable across JVMs, so a client and server can compare trees without exchanging the keys themselves.
+ */
+public class RegionHashTree {
+    private static final long SALT = 0x5375727665796F72L;
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    protected final Long2LongMap regions = new Long2LongOpenHashMap();
+    protected long root = 0;
+
+    public static long hashLong(long value) {
+        return HashCommon.murmurHash3(value ^ SALT);
+    }
+
+    /**
+     * A 64-bit FNV-1a hash of the string's UTF-8 bytes, mixed through {@link #hashLong}.
+     */
+    public static long hashString(String value) {
+        long hash = FNV_OFFSET;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+        }
+        return hashLong(hash);
+    }
+
+    public static long regionOf(ChunkPos pos) {
+        return ChunkPos.toLong(RegionSummary.chunkToRegion(pos.x), RegionSummary.chunkToRegion(pos.z));
+    }
+
+    public static long regionOf(BlockPos pos) {
+        return ChunkPos.toLong(RegionSummary.chunkToRegion(pos.getX() >> 4), RegionSummary.chunkToRegion(pos.getZ() >> 4));
+    }
+
+    public static long hashChunk(int x, int z) {
+        return hashLong(ChunkPos.toLong(x, z));
+    }
+
+    public static long hashStructure(RegistryKey<Structure> key, ChunkPos pos) {
+        return hashStructure(hashString(key.getValue().toString()), pos.toLong());
+    }
+
+    public static long hashStructure(long keyHash, long pos) {
+        return hashLong(keyHash ^ pos);
+    }
+
+    public static long hashLandmark(LandmarkType<?> type, BlockPos pos) {
+        return hashLong(hashString(type.id().toString()) ^ pos.asLong());
+    }
+
+    private static long mix(long hash, long value) {
+        return hashLong(hash ^ value);
+    }
+
+    private static long mix(long hash, @Nullable String value) {
+        return mix(hash, value == null ? 0 : hashString(value));
+    }
+
+    /**
+     * Hashes a landmark's type, position and content, so an edited landmark hashes differently to the one it replaced.
+     * Only the landmark's plain fields are used - names are hashed as their plain string, rather than any serialised form that may change between versions.
+     */
+    public static long hashLandmark(Landmark<?> landmark) {
+        long hash = hashLandmark(landmark.type(), landmark.pos());
+        UUID owner = landmark.owner();
+        hash = mix(hash, owner == null ? 0 : owner.getMostSignificantBits());
+        hash = mix(hash, owner == null ? 0 : owner.getLeastSignificantBits());
+        hash = mix(hash, landmark.color() == null ? null : landmark.color().getName());
+        hash = mix(hash, landmark.name() == null ? null : landmark.name().getString());
+        hash = mix(hash, landmark.texture() == null ? null : landmark.texture().toString());
+        if (landmark instanceof HasBlockBox hasBox) {
+            BlockBox box = hasBox.box();
+            hash = mix(hash, BlockPos.asLong(box.getMinX(), box.getMinY(), box.getMinZ()));
+            hash = mix(hash, BlockPos.asLong(box.getMaxX(), box.getMaxY(), box.getMaxZ()));
+        }
+        if (landmark instanceof HasAxis hasAxis) hash = mix(hash, hasAxis.axis().asString());
+        if (landmark instanceof HasPoiType hasPoiType) hash = mix(hash, hasPoiType.poiType().getValue().toString());
+        if (landmark instanceof HasCreated hasCreated) hash = mix(hash, hasCreated.created());
+        if (landmark instanceof HasSeed hasSeed) hash = mix(hash, hasSeed.seed());
+        return hash;
+    }
+
+    private static long combine(long regionPos, long hash) {
+        return hash == 0 ? 0 : hashLong(hash + hashLong(regionPos));
+    }
+
+    public synchronized void toggle(long regionPos, long elementHash) {
+        set(regionPos, regions.get(regionPos) ^ elementHash);
+    }
+
+    public void toggle(Landmark<?> landmark) {
+        toggle(regionOf(landmark.pos()), hashLandmark(landmark));
+    }
+
+    public synchronized void set(long regionPos, long hash) {
+        long old = regions.get(regionPos);
+        root ^= combine(regionPos, old) ^ combine(regionPos, hash);
+        if (hash == 0) {
+            regions.remove(regionPos);
+        } else {
+            regions.put(regionPos, hash);
+        }
+    }
+
+    public synchronized long root() {
+        return root;
+    }
+
+    public synchronized long get(long regionPos) {
+        return regions.get(regionPos);
+    }
+
+    public synchronized Long2LongMap asMap() {
+        return new Long2LongOpenHashMap(regions);
+    }
+
+    public static long hashRegionBits(ChunkPos regionPos, BitSet bits) {
+        long hash = 0;
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            hash ^= hashChunk(RegionSummary.regionToChunk(regionPos.x) + RegionSummary.xForBit(i), RegionSummary.regionToChunk(regionPos.z) + RegionSummary.zForBit(i));
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,100 @@
+package folk.sisby.surveyor.landmark;
+
+import folk.sisby.surveyor.util.RegionHashTree;
+import io.netty.buffer.Unpooled;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.text.Text;
+import net.minecraft.util.DyeColor;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.world.poi.PointOfInterestTypes;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class LandmarksTest {
+    static final UUID OWNER = UUID.fromString("3c2c1d4e-6a4b-4f0e-9a7e-2b1d6f0c8a11");
+
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    static List<Landmark<?>> sample() {
+        return List.of(
+            new SimplePointLandmark(new BlockPos(12, 70, -400), OWNER, DyeColor.LIME, Text.literal("Home"), new Identifier("surveyor", "textures/home.png")),
+            new SimplePointOfInterestLandmark(new BlockPos(100, 64, 100), PointOfInterestTypes.MEETING, DyeColor.RED, Text.translatable("block.minecraft.bell"), new Identifier("surveyor", "textures/bell.png")),
+            new NetherPortalLandmark(new BlockBox(-30, 70, 8, -30, 72, 9), Direction.Axis.Z),
+            new PlayerDeathLandmark(new BlockPos(0, -64, 0), OWNER, Text.literal("Fell from a high place"), 123_456_789L, -42)
+        );
+    }
+
+    static Landmark<?> roundTripBuf(Landmark<?> landmark) {
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+        Landmarks.writeBuf(buf, landmark);
+        Landmark<?> read = landmark.type().readBuf(buf, landmark.pos());
+        assertFalse(buf.isReadable());
+        buf.release();
+        return read;
+    }
+
+    @Test
+    void roundTripBuf() {
+        for (Landmark<?> landmark : sample()) {
+            assertEquals(landmark, roundTripBuf(landmark));
+        }
+        Landmark<?> empty = new SimplePointLandmark(new BlockPos(-5, -60, 3), null, null, null, null);
+        assertEquals(empty, roundTripBuf(empty));
+    }
+
+    @Test
+    void roundTripNbtFallback() {
+        // Types registered without binary writers fall back to their codec, as every type did before
+        for (Landmark<?> landmark : sample()) {
+            assertEquals(landmark, roundTripFallback(landmark));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T extends Landmark<T>> Landmark<?> roundTripFallback(Landmark<?> landmark) {
+        LandmarkType<T> type = (LandmarkType<T>) landmark.type();
+        LandmarkType<T> fallback = new SimpleLandmarkType<>(type.id(), type::createCodec);
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+        fallback.writeBuf(buf, (T) landmark);
+        Landmark<?> read = fallback.readBuf(buf, landmark.pos());
+        buf.release();
+        return read;
+    }
+
+    @Test
+    void roundTripNbt() {
+        Map<LandmarkType<?>, Map<BlockPos, Landmark<?>>> landmarks = new HashMap<>();
+        for (Landmark<?> landmark : sample()) {
+            landmarks.computeIfAbsent(landmark.type(), t -> new HashMap<>()).put(landmark.pos(), landmark);
+        }
+        assertEquals(landmarks, Landmarks.fromNbt(Landmarks.writeNbt(landmarks, new NbtCompound())));
+    }
+
+    @Test
+    void hashSurvivesRoundTrip() {
+        for (Landmark<?> landmark : sample()) {
+            assertEquals(RegionHashTree.hashLandmark(landmark), RegionHashTree.hashLandmark(roundTripBuf(landmark)));
+        }
+        SimplePointLandmark landmark = (SimplePointLandmark) sample().get(0);
+        assertNotEquals(RegionHashTree.hashLandmark(landmark), RegionHashTree.hashLandmark(new SimplePointLandmark(landmark.pos(), landmark.owner(), landmark.color(), Text.literal("Away"), landmark.texture())));
+    }
+}
@@ -0,0 +1,152 @@
+package folk.sisby.surveyor.structure;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import folk.sisby.surveyor.packet.S2CStructuresAddedPacket;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.registry.tag.TagKey;
+import net.minecraft.structure.JigsawJunction;
+import net.minecraft.structure.StructurePieceType;
+import net.minecraft.structure.pool.StructurePool;
+import net.minecraft.structure.pool.StructurePoolElementType;
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.gen.structure.Structure;
+import net.minecraft.world.gen.structure.StructureType;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class StructureShardCodecTest {
+    static final RegistryKey<World> WORLD = World.OVERWORLD;
+    static final RegistryKey<Structure> VILLAGE = RegistryKey.of(RegistryKeys.STRUCTURE, new Identifier("village_plains"));
+    static final RegistryKey<Structure> TREASURE = RegistryKey.of(RegistryKeys.STRUCTURE, new Identifier("buried_treasure"));
+    static final RegistryKey<StructureType<?>> JIGSAW = RegistryKey.of(RegistryKeys.STRUCTURE_TYPE, new Identifier("jigsaw"));
+    static final RegistryKey<StructureType<?>> BURIED_TREASURE = RegistryKey.of(RegistryKeys.STRUCTURE_TYPE, new Identifier("buried_treasure"));
+    static final TagKey<Structure> VILLAGE_TAG = TagKey.of(RegistryKeys.STRUCTURE, new Identifier("village"));
+
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    static StructureStartSummary village(ChunkPos pos) {
+        BlockPos origin = pos.getStartPos();
+        return new StructureStartSummary(List.of(
+            new JigsawPieceSummary(origin.add(2, 64, -3), 1, BlockRotation.CLOCKWISE_90, StructurePoolElementType.SINGLE_POOL_ELEMENT, new Identifier("village/plains/town_centers/plains_fountain_01"), 0, new BlockBox(origin.getX(), 63, origin.getZ() - 5, origin.getX() + 8, 70, origin.getZ() + 4), List.of(new JigsawJunction(origin.getX() + 4, 64, origin.getZ(), -1, StructurePool.Projection.TERRAIN_MATCHING))),
+            new JigsawPieceSummary(origin.add(-20, 64, 7), 0, BlockRotation.NONE, StructurePoolElementType.FEATURE_POOL_ELEMENT, new Identifier("pile_hay"), 2, new BlockBox(origin.getX() - 21, 64, origin.getZ() + 6, origin.getX() - 19, 65, origin.getZ() + 8), List.of())
+        ));
+    }
+
+    static StructureStartSummary treasure(ChunkPos pos) {
+        NbtCompound pieceNbt = new NbtCompound();
+        pieceNbt.putInt("custom", 7);
+        BlockPos origin = pos.getStartPos();
+        return new StructureStartSummary(List.of(
+            new StructurePieceSummary(StructurePieceType.BURIED_TREASURE, 0, new BlockBox(origin.getX() + 9, -12, origin.getZ() + 9, origin.getX() + 9, -12, origin.getZ() + 9), pieceNbt)
+        ));
+    }
+
+    static WorldStructureSummary summary(Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> structures) {
+        Map<RegistryKey<Structure>, RegistryKey<StructureType<?>>> types = new HashMap<>();
+        Multimap<RegistryKey<Structure>, TagKey<Structure>> tags = HashMultimap.create();
+        types.put(VILLAGE, JIGSAW);
+        types.put(TREASURE, BURIED_TREASURE);
+        tags.put(VILLAGE, VILLAGE_TAG);
+        return new WorldStructureSummary(WORLD, structures, types, tags);
+    }
+
+    static Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> sample() {
+        Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> structures = new HashMap<>();
+        structures.put(VILLAGE, new HashMap<>(Map.of(new ChunkPos(-3, 5), village(new ChunkPos(-3, 5)), new ChunkPos(12, -30), village(new ChunkPos(12, -30)))));
+        structures.put(TREASURE, new HashMap<>(Map.of(new ChunkPos(1, 1), treasure(new ChunkPos(1, 1)))));
+        return structures;
+    }
+
+    static List<NbtCompound> pieceNbt(StructureStartSummary start) {
+        return start.getChildren().stream().map(StructurePieceSummary::toNbt).toList();
+    }
+
+    static void assertSameStructures(Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> expected, Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((key, starts) -> {
+            assertEquals(starts.keySet(), actual.get(key).keySet());
+            starts.forEach((pos, start) -> {
+                assertEquals(start.getPieceBoxes(), actual.get(key).get(pos).getPieceBoxes());
+                assertEquals(pieceNbt(start), pieceNbt(actual.get(key).get(pos)));
+            });
+        });
+    }
+
+    static void assertSampleMetadata(StructureShardCodec.Shard shard) {
+        assertEquals(JIGSAW, shard.structureTypes().get(VILLAGE));
+        assertEquals(BURIED_TREASURE, shard.structureTypes().get(TREASURE));
+        assertEquals(Set.of(VILLAGE_TAG), Set.copyOf(shard.structureTags().get(VILLAGE)));
+        assertEquals(Set.of(), Set.copyOf(shard.structureTags().get(TREASURE)));
+    }
+
+    @Test
+    void roundTrip() {
+        Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> structures = sample();
+        NbtCompound nbt = StructureShardCodec.write(summary(structures), structures);
+        assertEquals(StructureShardCodec.FORMAT, nbt.getInt(StructureShardCodec.KEY_FORMAT));
+        StructureShardCodec.Shard shard = StructureShardCodec.read(nbt);
+        assertNotNull(shard);
+        assertSampleMetadata(shard);
+        assertSameStructures(structures, shard.structures());
+    }
+
+    @Test
+    void roundTripEncoded() {
+        Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> structures = sample();
+        StructureShardCodec.Shard read = StructureShardCodec.read(StructureShardCodec.write(summary(structures), structures));
+        assertNotNull(read);
+        // Starts that haven't been materialised are written by transcoding their encoded pieces into the new file's palette
+        StructureShardCodec.Shard rewritten = StructureShardCodec.read(StructureShardCodec.write(summary(read.structures()), read.structures()));
+        assertNotNull(rewritten);
+        assertSampleMetadata(rewritten);
+        assertSameStructures(structures, rewritten.structures());
+    }
+
+    @Test
+    void readPacketFormat() {
+        Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> structures = sample();
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+        S2CStructuresAddedPacket.of(summary(structures), structures).writeBuf(buf);
+        NbtCompound nbt = new NbtCompound();
+        nbt.putInt(StructureShardCodec.KEY_FORMAT, StructureShardCodec.PACKET_FORMAT);
+        nbt.putByteArray(StructureShardCodec.KEY_DATA, ByteBufUtil.getBytes(buf));
+        StructureShardCodec.Shard shard = StructureShardCodec.read(nbt);
+        assertNotNull(shard);
+        assertSampleMetadata(shard);
+        assertSameStructures(structures, shard.structures());
+    }
+
+    @Test
+    void skipUnsupportedFormat() {
+        Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> structures = sample();
+        NbtCompound nbt = StructureShardCodec.write(summary(structures), structures);
+        nbt.putInt(StructureShardCodec.KEY_FORMAT, StructureShardCodec.FORMAT + 1);
+        assertNull(StructureShardCodec.read(nbt));
+    }
+}
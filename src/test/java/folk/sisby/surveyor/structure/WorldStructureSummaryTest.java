@@ -0,0 +1,81 @@
+package folk.sisby.surveyor.structure;
+
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.gen.structure.Structure;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WorldStructureSummaryTest {
+    @TempDir
+    File folder;
+
+    @BeforeAll
+    static void bootstrap() {
+        StructureShardCodecTest.bootstrap();
+    }
+
+    static void add(WorldStructureSummary summary, Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> expected, ChunkPos pos) {
+        StructureStartSummary start = StructureShardCodecTest.village(pos);
+        summary.put(null, StructureShardCodecTest.VILLAGE, pos, start, StructureShardCodecTest.JIGSAW, List.of(StructureShardCodecTest.VILLAGE_TAG));
+        expected.computeIfAbsent(StructureShardCodecTest.VILLAGE, k -> new HashMap<>()).put(pos, start);
+    }
+
+    @Test
+    void saveAppendsSegments() {
+        WorldStructureSummary summary = StructureShardCodecTest.summary(Map.of());
+        Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> expected = new HashMap<>();
+        add(summary, expected, new ChunkPos(1, 2));
+        add(summary, expected, new ChunkPos(-40, 3));
+        assertEquals(2, summary.save(folder));
+        add(summary, expected, new ChunkPos(4, 5));
+        assertEquals(1, summary.save(folder));
+        assertEquals(0, summary.save(folder));
+        assertTrue(WorldStructureSummary.getSegmentFile(folder, new ChunkPos(0, 0), 1).exists());
+        assertTrue(WorldStructureSummary.getSegmentFile(folder, new ChunkPos(0, 0), 2).exists());
+        assertTrue(WorldStructureSummary.getSegmentFile(folder, new ChunkPos(-2, 0), 1).exists());
+        StructureShardCodecTest.assertSameStructures(expected, WorldStructureSummary.load(StructureShardCodecTest.WORLD, folder).view());
+    }
+
+    @Test
+    void compactFoldsSegmentsIntoShard() {
+        WorldStructureSummary summary = StructureShardCodecTest.summary(Map.of());
+        Map<RegistryKey<Structure>, Map<ChunkPos, StructureStartSummary>> expected = new HashMap<>();
+        ChunkPos regionPos = new ChunkPos(0, 0);
+        for (int i = 1; i <= WorldStructureSummary.COMPACT_SEGMENTS; i++) {
+            add(summary, expected, new ChunkPos(i, i));
+            summary.save(folder);
+        }
+        WorldStructureSummary.awaitCompactions(folder);
+        assertTrue(WorldStructureSummary.getShardFile(folder, regionPos).exists());
+        for (int i = 1; i <= WorldStructureSummary.COMPACT_SEGMENTS; i++) {
+            assertFalse(WorldStructureSummary.getSegmentFile(folder, regionPos, i).exists());
+        }
+        StructureShardCodecTest.assertSameStructures(expected, WorldStructureSummary.load(StructureShardCodecTest.WORLD, folder).view());
+
+        // Segments saved after a compaction keep counting on, and are read on top of the shard
+        add(summary, expected, new ChunkPos(20, 3));
+        summary.save(folder);
+        assertTrue(WorldStructureSummary.getSegmentFile(folder, regionPos, WorldStructureSummary.COMPACT_SEGMENTS + 1).exists());
+        WorldStructureSummary loaded = WorldStructureSummary.load(StructureShardCodecTest.WORLD, folder);
+        StructureShardCodecTest.assertSameStructures(expected, loaded.view());
+
+        // Compacting a loaded summary copies its still-encoded starts across
+        for (int i = 1; i < WorldStructureSummary.COMPACT_SEGMENTS; i++) {
+            add(loaded, expected, new ChunkPos(20 + i, 10));
+            loaded.save(folder);
+        }
+        WorldStructureSummary.awaitCompactions(folder);
+        StructureShardCodecTest.assertSameStructures(expected, WorldStructureSummary.load(StructureShardCodecTest.WORLD, folder).view());
+    }
+}
@@ -0,0 +1,113 @@
+package folk.sisby.surveyor.util;
+
+import folk.sisby.surveyor.terrain.RegionSummary;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.util.math.ChunkPos;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RegionBitmapTest {
+    static BitSet full() {
+        BitSet bits = new BitSet(RegionSummary.BITSET_SIZE);
+        bits.set(0, RegionSummary.BITSET_SIZE);
+        return bits;
+    }
+
+    static BitSet random(long seed, int count) {
+        Random random = new Random(seed);
+        BitSet bits = new BitSet(RegionSummary.BITSET_SIZE);
+        for (int i = 0; i < count; i++) {
+            bits.set(random.nextInt(RegionSummary.BITSET_SIZE));
+        }
+        return bits;
+    }
+
+    /**
+     * Sparse, dense and full regions, on both sides of the origin and far from it.
+     */
+    static Map<ChunkPos, BitSet> sample() {
+        return Map.of(
+            new ChunkPos(0, 0), random(1, 5),
+            new ChunkPos(-1, 0), random(2, RegionBitmap.ARRAY_MAX + 100),
+            new ChunkPos(3, -7), full(),
+            new ChunkPos(-937, 58_000), random(3, 1),
+            new ChunkPos(Integer.MAX_VALUE >> 9, Integer.MIN_VALUE >> 9), random(4, RegionBitmap.ARRAY_MAX)
+        );
+    }
+
+    static RegionBitmap of(Map<ChunkPos, BitSet> regions) {
+        RegionBitmap bitmap = new RegionBitmap();
+        regions.forEach(bitmap::or);
+        return bitmap;
+    }
+
+    @Test
+    void roundTripBytes() {
+        Map<ChunkPos, BitSet> regions = sample();
+        RegionBitmap read = RegionBitmap.fromBytes(of(regions).toBytes());
+        assertEquals(regions, read.asBitSets());
+    }
+
+    @Test
+    void roundTripEmpty() {
+        assertEquals(Map.of(), RegionBitmap.fromBytes(new RegionBitmap().toBytes()).asBitSets());
+        assertEquals(Map.of(), RegionBitmap.fromBytes(new byte[0]).asBitSets());
+    }
+
+    @Test
+    void roundTripAdded() {
+        RegionBitmap bitmap = new RegionBitmap();
+        Random random = new Random(5);
+        for (int i = 0; i < 5000; i++) {
+            bitmap.add(random.nextInt(200) - 100, random.nextInt(200) - 100);
+        }
+        RegionBitmap read = RegionBitmap.fromBytes(bitmap.toBytes());
+        assertEquals(bitmap.asBitSets(), read.asBitSets());
+        for (int x = -100; x < 100; x++) {
+            for (int z = -100; z < 100; z++) {
+                assertEquals(bitmap.contains(x, z), read.contains(x, z));
+            }
+        }
+    }
+
+    @Test
+    void mortonKeyRoundTrip() {
+        for (ChunkPos regionPos : sample().keySet()) {
+            assertEquals(regionPos, RegionBitmap.fromMortonKey(RegionBitmap.mortonKey(regionPos.x, regionPos.z)));
+        }
+    }
+
+    @Test
+    void readLegacyLongArray() {
+        Map<ChunkPos, BitSet> regions = sample();
+        LongArrayList legacy = new LongArrayList();
+        regions.forEach((regionPos, bits) -> {
+            legacy.add(regionPos.toLong());
+            if (bits.cardinality() == RegionSummary.BITSET_SIZE) {
+                legacy.add(-1);
+            } else {
+                long[] words = bits.toLongArray();
+                legacy.add(words.length);
+                legacy.addElements(legacy.size(), words);
+            }
+        });
+        assertEquals(regions, RegionBitmap.fromLongArray(legacy.toLongArray()).asBitSets());
+    }
+
+    @Test
+    void legacyRegionsStayMutable() {
+        RegionBitmap bitmap = RegionBitmap.fromLongArray(new long[]{ChunkPos.toLong(0, 0), -1, ChunkPos.toLong(1, 0), 0});
+        assertTrue(bitmap.contains(5, 5));
+        assertFalse(bitmap.contains(40, 5));
+        assertTrue(bitmap.add(40, 5));
+        assertFalse(bitmap.add(5, 5));
+        assertTrue(RegionBitmap.fromBytes(bitmap.toBytes()).contains(40, 5));
+    }
+}